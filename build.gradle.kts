@@ -6,6 +6,7 @@ plugins {
     alias(libs.plugins.shadowPlugin)
     alias(libs.plugins.generatePOMPlugin)
     alias(libs.plugins.spotBugsPlugin)
+    alias(libs.plugins.jmhPlugin)
 }
 
 
@@ -63,6 +64,13 @@ dependencies {
     implementation(libs.zaxxer.hikariCP) {
         isTransitive = true
     }
+    jmh(libs.spigotmc.spigotapi)
+    jmh(libs.jetbrains.annotations) {
+        isTransitive = false
+    }
+    jmh(libs.h2database.h2)
+    testImplementation(libs.junit.jupiter)
+    testRuntimeOnly(libs.junit.platformlauncher)
 }
 
 tasks.withType<JavaCompile> {
@@ -88,6 +96,27 @@ tasks {
         exclude("META-INF/maven/org.slf4j/**")
     }
 
+    named("spotbugsJmh") {
+        enabled = false
+    }
+
+    // The baseline is produced on reference hardware, see src/jmh/baseline/README.md
+    register<Copy>("jmhBaseline") {
+        description = "Runs the benchmarks and stores their results as the baseline to compare against"
+        group = "benchmark"
+        dependsOn("jmh")
+        from(layout.buildDirectory.file("results/jmh/results.json"))
+        into(layout.projectDirectory.dir("src/jmh/baseline"))
+    }
+
+    named("spotbugsTest") {
+        enabled = false
+    }
+
+    test {
+        useJUnitPlatform()
+    }
+
     spotbugsMain {
         reports.create("html") {
             required = true
@@ -104,3 +133,15 @@ spotbugs {
     effort = Effort.DEFAULT
     reportLevel = Confidence.DEFAULT
 }
+
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+    // Allocation rate and GC counts are reported next to the throughput and latency of every benchmark
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+    // The plugin names the file results.txt whatever the format is
+    resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+}
@@ -0,0 +1,346 @@
+package com.clanjhoo.dbhandler.data;
+
+import com.clanjhoo.dbhandler.annotations.DataField;
+import com.clanjhoo.dbhandler.annotations.Entity;
+import com.clanjhoo.dbhandler.annotations.PrimaryKey;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The entities used by the benchmarks. There is one per key type and width, where the width is the total amount of
+ * stored fields. Payload fields cycle through int, long, double, String, boolean and float, so every width exercises
+ * the same mix of types
+ */
+final class BenchmarkEntities {
+    private BenchmarkEntities() {}
+
+    /**
+     * Returns the entity class with the given key type and width
+     * @param keyType UUID, LONG or COMPOSITE, the latter being a String and an int
+     * @param width the amount of stored fields: 4, 16 or 32
+     * @return the entity class
+     */
+    @NotNull
+    static Class<?> entityClass(@NotNull String keyType, int width) {
+        switch (keyType + width) {
+            case "UUID4":
+                return Uuid4.class;
+            case "UUID16":
+                return Uuid16.class;
+            case "UUID32":
+                return Uuid32.class;
+            case "LONG4":
+                return Long4.class;
+            case "LONG16":
+                return Long16.class;
+            case "LONG32":
+                return Long32.class;
+            case "COMPOSITE4":
+                return Composite4.class;
+            case "COMPOSITE16":
+                return Composite16.class;
+            case "COMPOSITE32":
+                return Composite32.class;
+            default:
+                throw new IllegalArgumentException("No benchmark entity with key " + keyType + " and width " + width);
+        }
+    }
+
+    /**
+     * Builds the i-th key of the given type, sorted like the primary key fields of the entity
+     * @param keyType UUID, LONG or COMPOSITE
+     * @param i the position of the key
+     * @return the key
+     */
+    @NotNull
+    static DataKey key(@NotNull String keyType, int i) {
+        switch (keyType) {
+            case "UUID":
+                return DataKey.of(new UUID(0x5EEDL, i));
+            case "LONG":
+                return DataKey.of((long) i);
+            case "COMPOSITE":
+                return DataKey.of("player" + (i >>> 3), i & 7);
+            default:
+                throw new IllegalArgumentException("Unknown key type " + keyType);
+        }
+    }
+
+    /**
+     * Instantiates an item with the given key and every other field filled with a value derived from the seed
+     * @param manager the manager of the entity
+     * @param key the primary key of the item
+     * @param seed the value the rest of the fields are derived from
+     * @return the new item
+     */
+    @NotNull
+    static <T> T create(@NotNull DBObjectManager<T> manager, @NotNull DataKey key, int seed) throws ReflectiveOperationException {
+        Map<String, Serializable> data = new HashMap<>();
+        for (FieldData field : manager.getFields()) {
+            data.put(field.name, valueOf(field.type, seed));
+        }
+        FieldData[] keyFields = manager.getPrimaryKeyFields();
+        for (int i = 0; i < keyFields.length; i++) {
+            data.put(keyFields[i].name, key.get(i));
+        }
+        return manager.getInstance(data, false);
+    }
+
+    @NotNull
+    static Serializable valueOf(@NotNull Class<?> type, int seed) {
+        if (int.class.equals(type)) {
+            return seed;
+        }
+        else if (long.class.equals(type)) {
+            return seed * 31L;
+        }
+        else if (double.class.equals(type)) {
+            return seed * 0.5;
+        }
+        else if (float.class.equals(type)) {
+            return seed * 0.25f;
+        }
+        else if (boolean.class.equals(type)) {
+            return (seed & 1) == 0;
+        }
+        else if (String.class.equals(type)) {
+            return "value" + seed;
+        }
+        else if (UUID.class.equals(type)) {
+            return new UUID(seed, seed);
+        }
+        throw new IllegalArgumentException("Unsupported field type " + type);
+    }
+
+    @Entity(table = "bench_uuid_4")
+    static final class Uuid4 {
+        @PrimaryKey
+        private UUID id;
+        private int f00;
+        private long f01;
+        private double f02;
+    }
+
+    @Entity(table = "bench_uuid_16")
+    static final class Uuid16 {
+        @PrimaryKey
+        private UUID id;
+        private int f00;
+        private long f01;
+        private double f02;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f03;
+        private boolean f04;
+        private float f05;
+        private int f06;
+        private long f07;
+        private double f08;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f09;
+        private boolean f10;
+        private float f11;
+        private int f12;
+        private long f13;
+        private double f14;
+    }
+
+    @Entity(table = "bench_uuid_32")
+    static final class Uuid32 {
+        @PrimaryKey
+        private UUID id;
+        private int f00;
+        private long f01;
+        private double f02;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f03;
+        private boolean f04;
+        private float f05;
+        private int f06;
+        private long f07;
+        private double f08;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f09;
+        private boolean f10;
+        private float f11;
+        private int f12;
+        private long f13;
+        private double f14;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f15;
+        private boolean f16;
+        private float f17;
+        private int f18;
+        private long f19;
+        private double f20;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f21;
+        private boolean f22;
+        private float f23;
+        private int f24;
+        private long f25;
+        private double f26;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f27;
+        private boolean f28;
+        private float f29;
+        private int f30;
+    }
+
+    @Entity(table = "bench_long_4")
+    static final class Long4 {
+        @PrimaryKey
+        private long id;
+        private int f00;
+        private long f01;
+        private double f02;
+    }
+
+    @Entity(table = "bench_long_16")
+    static final class Long16 {
+        @PrimaryKey
+        private long id;
+        private int f00;
+        private long f01;
+        private double f02;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f03;
+        private boolean f04;
+        private float f05;
+        private int f06;
+        private long f07;
+        private double f08;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f09;
+        private boolean f10;
+        private float f11;
+        private int f12;
+        private long f13;
+        private double f14;
+    }
+
+    @Entity(table = "bench_long_32")
+    static final class Long32 {
+        @PrimaryKey
+        private long id;
+        private int f00;
+        private long f01;
+        private double f02;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f03;
+        private boolean f04;
+        private float f05;
+        private int f06;
+        private long f07;
+        private double f08;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f09;
+        private boolean f10;
+        private float f11;
+        private int f12;
+        private long f13;
+        private double f14;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f15;
+        private boolean f16;
+        private float f17;
+        private int f18;
+        private long f19;
+        private double f20;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f21;
+        private boolean f22;
+        private float f23;
+        private int f24;
+        private long f25;
+        private double f26;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f27;
+        private boolean f28;
+        private float f29;
+        private int f30;
+    }
+
+    @Entity(table = "bench_composite_4")
+    static final class Composite4 {
+        @PrimaryKey
+        @DataField(sqltype = "VARCHAR(64)")
+        private String name;
+        @PrimaryKey
+        private int slot;
+        private int f00;
+        private long f01;
+    }
+
+    @Entity(table = "bench_composite_16")
+    static final class Composite16 {
+        @PrimaryKey
+        @DataField(sqltype = "VARCHAR(64)")
+        private String name;
+        @PrimaryKey
+        private int slot;
+        private int f00;
+        private long f01;
+        private double f02;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f03;
+        private boolean f04;
+        private float f05;
+        private int f06;
+        private long f07;
+        private double f08;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f09;
+        private boolean f10;
+        private float f11;
+        private int f12;
+        private long f13;
+    }
+
+    @Entity(table = "bench_composite_32")
+    static final class Composite32 {
+        @PrimaryKey
+        @DataField(sqltype = "VARCHAR(64)")
+        private String name;
+        @PrimaryKey
+        private int slot;
+        private int f00;
+        private long f01;
+        private double f02;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f03;
+        private boolean f04;
+        private float f05;
+        private int f06;
+        private long f07;
+        private double f08;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f09;
+        private boolean f10;
+        private float f11;
+        private int f12;
+        private long f13;
+        private double f14;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f15;
+        private boolean f16;
+        private float f17;
+        private int f18;
+        private long f19;
+        private double f20;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f21;
+        private boolean f22;
+        private float f23;
+        private int f24;
+        private long f25;
+        private double f26;
+        @DataField(sqltype = "VARCHAR(64)")
+        private String f27;
+        private boolean f28;
+        private float f29;
+    }
+}
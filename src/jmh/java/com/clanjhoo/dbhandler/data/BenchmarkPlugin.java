@@ -0,0 +1,115 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * A plugin that runs without a server, so managers and drivers can be benchmarked outside of Minecraft.
+ * The server behind it only provides a logger, a scheduler that runs asynchronous tasks in a thread pool and a plugin
+ * manager that ignores every event. Any other call returns the default value of its type
+ */
+final class BenchmarkPlugin extends JavaPlugin {
+    private static final Logger LOGGER = Logger.getLogger("DBHandlerBenchmark");
+    private static final ExecutorService ASYNC = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "DBHandler benchmark async task");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final BukkitScheduler SCHEDULER = proxy(BukkitScheduler.class, (proxy, method, args) -> {
+        if (method.getName().equals("runTaskAsynchronously") && args.length == 2 && args[1] instanceof Runnable) {
+            ASYNC.execute((Runnable) args[1]);
+        }
+        return defaultValue(method.getReturnType());
+    });
+    private static final PluginManager PLUGIN_MANAGER = proxy(PluginManager.class, (proxy, method, args) -> defaultValue(method.getReturnType()));
+
+    private BenchmarkPlugin(@NotNull JavaPluginLoader loader, @NotNull PluginDescriptionFile description, @NotNull File dataFolder) {
+        super(loader, description, dataFolder, new File(dataFolder, "DBHandlerBenchmark.jar"));
+    }
+
+    /**
+     * Creates a plugin storing its data in a new temporary folder
+     * @return the plugin
+     * @throws IOException if the temporary folder could not be created
+     */
+    @NotNull
+    static synchronized BenchmarkPlugin create() throws IOException {
+        // Only warnings are logged, so the output of the benchmarks stays readable
+        LOGGER.setLevel(Level.WARNING);
+        Server server = Bukkit.getServer();
+        if (server == null) {
+            server = proxy(Server.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getLogger":
+                        return LOGGER;
+                    case "getName":
+                    case "getVersion":
+                    case "getBukkitVersion":
+                        return "DBHandlerBenchmark";
+                    case "getScheduler":
+                        return SCHEDULER;
+                    case "getPluginManager":
+                        return PLUGIN_MANAGER;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+            Bukkit.setServer(server);
+        }
+        File dataFolder = Files.createTempDirectory("dbhandler-benchmark").toFile();
+        PluginDescriptionFile description = new PluginDescriptionFile("DBHandlerBenchmark", "1.0", BenchmarkPlugin.class.getName());
+        return new BenchmarkPlugin(new JavaPluginLoader(server), description, dataFolder);
+    }
+
+    /**
+     * Deletes the data folder of the plugin with everything inside it
+     * @throws IOException if any file could not be deleted
+     */
+    void deleteData() throws IOException {
+        try (Stream<Path> paths = Files.walk(getDataFolder().toPath())) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <I> I proxy(@NotNull Class<I> type, @NotNull InvocationHandler handler) {
+        return (I) Proxy.newProxyInstance(BenchmarkPlugin.class.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName() + " of the benchmarks";
+                default:
+                    return handler.invoke(proxy, method, args);
+            }
+        });
+    }
+
+    private static Object defaultValue(@NotNull Class<?> type) {
+        return type.isPrimitive() && type != void.class ? Array.get(Array.newInstance(type, 1), 0) : null;
+    }
+}
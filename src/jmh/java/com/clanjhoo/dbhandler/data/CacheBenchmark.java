@@ -0,0 +1,68 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookup of items already in memory, which plugins usually run on the main thread
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CacheBenchmark {
+    @Param({"UUID", "LONG", "COMPOSITE"})
+    public String keyType;
+
+    @Param({"1024", "131072"})
+    public int entries;
+
+    private BenchmarkPlugin plugin;
+    private DBObjectManager<Object> manager;
+    private DataKey[] keys;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position;
+    }
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        plugin = BenchmarkPlugin.create();
+        manager = new DBObjectManager<>((Class<Object>) BenchmarkEntities.entityClass(keyType, 4), plugin, StorageType.MEMORY, null, null, -1);
+        keys = new DataKey[entries];
+        List<DataKey> toLoad = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            keys[i] = BenchmarkEntities.key(keyType, i);
+            toLoad.add(keys[i]);
+        }
+        manager.loadAll(toLoad).join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        manager.close();
+        plugin.deleteData();
+    }
+
+    private DataKey next(Cursor cursor) {
+        // Keys are visited in a fixed order with a stride, so consecutive lookups do not hit the same cache lines
+        cursor.position = (cursor.position + 7919) & (entries - 1);
+        return keys[cursor.position];
+    }
+
+    @Benchmark
+    public Object tryGetDataNow(Cursor cursor) {
+        return manager.tryGetDataNow(next(cursor));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object tryGetDataNowContended(Cursor cursor) {
+        return manager.tryGetDataNow(next(cursor));
+    }
+}
@@ -0,0 +1,74 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures saving and loading batches of items with the file driver, storing them as JSON files or binary rows
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FileDriverBenchmark {
+    @Param({"4", "16", "32"})
+    public int width;
+
+    @Param({"UUID", "LONG", "COMPOSITE"})
+    public String keyType;
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    @Param({"JSON", "BINARY"})
+    public String format;
+
+    private BenchmarkPlugin plugin;
+    private DBObjectManager<Object> manager;
+    private JSONDriver<Object> driver;
+    private String table;
+    private List<Object> items;
+    private List<DataKey> keys;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException, ReflectiveOperationException {
+        plugin = BenchmarkPlugin.create();
+        // The manager only provides the mapping of the entity, the driver is used directly
+        manager = new DBObjectManager<>((Class<Object>) BenchmarkEntities.entityClass(keyType, width), plugin, StorageType.MEMORY, null, null, -1);
+        driver = new JSONDriver<>(plugin, manager, "files", Collections.emptyMap(), format.equals("BINARY"));
+        TableData tableData = manager.getTableData();
+        table = tableData.getName();
+        driver.createTable(tableData);
+        items = new ArrayList<>(batchSize);
+        keys = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            DataKey key = BenchmarkEntities.key(keyType, i);
+            keys.add(key);
+            items.add(BenchmarkEntities.create(manager, key, i));
+        }
+        driver.saveData(table, items);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        driver.close();
+        manager.close();
+        plugin.deleteData();
+    }
+
+    @Benchmark
+    public Map<DataKey, Boolean> saveData() throws ReflectiveOperationException {
+        return driver.saveData(table, items);
+    }
+
+    @Benchmark
+    public Map<DataKey, Object> loadData() throws IOException, ReflectiveOperationException {
+        return driver.loadData(table, keys);
+    }
+}
@@ -0,0 +1,67 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of entities from and to field maps, which every driver goes through
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MappingBenchmark {
+    @Param({"4", "16", "32"})
+    public int width;
+
+    @Param({"UUID", "LONG", "COMPOSITE"})
+    public String keyType;
+
+    private BenchmarkPlugin plugin;
+    private DBObjectManager<Object> manager;
+    private Object item;
+    private Map<String, Serializable> data;
+    private String field;
+    private Serializable value;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException, ReflectiveOperationException {
+        plugin = BenchmarkPlugin.create();
+        manager = new DBObjectManager<>((Class<Object>) BenchmarkEntities.entityClass(keyType, width), plugin, StorageType.MEMORY, null, null, -1);
+        item = BenchmarkEntities.create(manager, BenchmarkEntities.key(keyType, 1), 1);
+        data = manager.toMap(item);
+        for (FieldData fd : manager.getFields()) {
+            if (!fd.isPrimary) {
+                field = fd.name;
+                value = BenchmarkEntities.valueOf(fd.type, 2);
+                break;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        manager.close();
+        plugin.deleteData();
+    }
+
+    @Benchmark
+    public Object getInstance() throws ReflectiveOperationException {
+        return manager.getInstance(data, false);
+    }
+
+    @Benchmark
+    public Map<String, Serializable> toMap() throws ReflectiveOperationException {
+        return manager.toMap(item);
+    }
+
+    @Benchmark
+    public Object setValue() throws ReflectiveOperationException {
+        manager.setValue(item, field, value);
+        return item;
+    }
+}
@@ -0,0 +1,83 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures batch saves and loads of the MariaDB driver against an in-memory H2 database running in MySQL mode. H2 runs
+ * inside the benchmark, so the results show the cost of the driver and JDBC batching without any network round trip
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MariaDBBatchBenchmark {
+    @Param({"4", "16", "32"})
+    public int width;
+
+    @Param({"UUID", "LONG", "COMPOSITE"})
+    public String keyType;
+
+    @Param({"1", "100", "1000"})
+    public int batchSize;
+
+    @Param({"false", "true"})
+    public boolean transactions;
+
+    private BenchmarkPlugin plugin;
+    private DBObjectManager<Object> manager;
+    private MariaDBDriver<Object> driver;
+    private String table;
+    private List<Object> items;
+    private List<DataKey> keys;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException, SQLException, ReflectiveOperationException {
+        plugin = BenchmarkPlugin.create();
+        // The manager only provides the mapping of the entity, the driver is used directly
+        manager = new DBObjectManager<>((Class<Object>) BenchmarkEntities.entityClass(keyType, width), plugin, StorageType.MEMORY, null, null, -1);
+        Map<String, Object> options = new HashMap<>();
+        options.put("jdbcUrl", "jdbc:h2:mem:" + keyType + width + "_" + batchSize + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        options.put("batchSize", batchSize);
+        options.put("transactions", transactions);
+        driver = new MariaDBDriver<>(plugin, manager, "localhost", 3306, "benchmark", "sa", "", "bench_", options);
+        TableData tableData = manager.getTableData();
+        table = tableData.getName();
+        if (!driver.createTable(tableData)) {
+            throw new IllegalStateException("Could not create the table " + table + " in H2");
+        }
+        items = new ArrayList<>(batchSize);
+        keys = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            DataKey key = BenchmarkEntities.key(keyType, i);
+            keys.add(key);
+            items.add(BenchmarkEntities.create(manager, key, i));
+        }
+        driver.saveData(table, items);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        driver.dropTable(table);
+        driver.close();
+        manager.close();
+        plugin.deleteData();
+    }
+
+    @Benchmark
+    public Map<DataKey, Boolean> saveData() throws ReflectiveOperationException {
+        return driver.saveData(table, items);
+    }
+
+    @Benchmark
+    public Map<DataKey, Object> loadData() throws SQLException, ReflectiveOperationException {
+        return driver.loadData(table, keys);
+    }
+}
@@ -1,7 +1,6 @@
 package com.clanjhoo.dbhandler;
 
 import com.clanjhoo.dbhandler.data.DBObjectManager;
-import com.clanjhoo.dbhandler.data.SaveOperation;
 import com.clanjhoo.dbhandler.data.StorageType;
 import com.clanjhoo.dbhandler.samples.SampleEntity;
 import com.clanjhoo.dbhandler.samples.SampleEventHandler;
@@ -59,8 +58,8 @@ public final class DBHandler extends JavaPlugin {
     public void onDisable() {
         // Plugin shutdown logic
         if (myEntityManager != null) {
-            myEntityManager.stopRunningTasks();
-            myEntityManager.saveAllSync(SaveOperation.SAVE_ALL);
+            // Saves every loaded item before releasing the storage
+            myEntityManager.close();
         }
     }
 
@@ -0,0 +1,248 @@
+package com.clanjhoo.dbhandler.data;
+
+import com.google.gson.Gson;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Converts the entities handled by a DBObjectManager from and to a compact binary row, compiled once from its fields.
+ * A row starts with a header made of the magic bytes "DB", the format version and the names of the stored fields,
+ * followed by one value per field. Each value starts with a type tag, then primitives are written in big-endian order,
+ * UUIDs as two longs and strings as their length followed by their UTF-8 bytes. Fields of other types are written as
+ * length-prefixed JSON text.
+ * Rows are matched to the fields of the entity by name, so fields can be added, removed or reordered later: unknown
+ * values are skipped and missing fields get their default value. The codec holds no mutable state and can be used
+ * from any thread at the same time
+ */
+final class BinaryCodec<T> {
+    private static final Gson GSON = new Gson();
+    private static final short MAGIC = 0x4442;
+    private static final byte VERSION = 1;
+    private static final byte NULL = 0;
+    private static final byte BYTE = 1;
+    private static final byte SHORT = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte FLOAT = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte CHAR = 8;
+    private static final byte STRING = 9;
+    private static final byte UUID_TAG = 10;
+    private static final byte JSON = 11;
+
+    private final DBObjectManager<T> manager;
+    private final FieldData[] fields;
+    private final byte[] tags;
+    private final Type[] types;
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    /**
+     * Compiles the codec of the entities handled by a manager
+     * @param manager the manager handling the entities
+     */
+    BinaryCodec(@NotNull DBObjectManager<T> manager) {
+        this.manager = manager;
+        this.fields = manager.getFields();
+        this.tags = new byte[fields.length];
+        this.types = new Type[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            tags[i] = tagOf(fields[i].type);
+            types[i] = fields[i].field.getGenericType();
+            positions.put(fields[i].name, i);
+        }
+    }
+
+    /**
+     * Writes an item as a binary row
+     * @param out the destination of the row
+     * @param item the item to write
+     * @throws IOException if the destination could not be written
+     * @throws ReflectiveOperationException if any field of the item could not be read
+     */
+    void write(@NotNull DataOutput out, @NotNull T item) throws IOException, ReflectiveOperationException {
+        out.writeShort(MAGIC);
+        out.writeByte(VERSION);
+        out.writeShort(fields.length);
+        for (FieldData field : fields) {
+            writeString(out, field.name);
+        }
+        for (int i = 0; i < fields.length; i++) {
+            Object value = fields[i].get(item);
+            if (value == null) {
+                out.writeByte(NULL);
+                continue;
+            }
+            out.writeByte(tags[i]);
+            switch (tags[i]) {
+                case BYTE:
+                    out.writeByte(((Number) value).byteValue());
+                    break;
+                case SHORT:
+                    out.writeShort(((Number) value).shortValue());
+                    break;
+                case INT:
+                    out.writeInt(((Number) value).intValue());
+                    break;
+                case LONG:
+                    out.writeLong(((Number) value).longValue());
+                    break;
+                case FLOAT:
+                    out.writeFloat(((Number) value).floatValue());
+                    break;
+                case DOUBLE:
+                    out.writeDouble(((Number) value).doubleValue());
+                    break;
+                case BOOLEAN:
+                    out.writeBoolean((Boolean) value);
+                    break;
+                case CHAR:
+                    out.writeChar((Character) value);
+                    break;
+                case STRING:
+                    writeString(out, (String) value);
+                    break;
+                case UUID_TAG:
+                    out.writeLong(((UUID) value).getMostSignificantBits());
+                    out.writeLong(((UUID) value).getLeastSignificantBits());
+                    break;
+                default:
+                    writeString(out, GSON.toJson(value, types[i]));
+            }
+        }
+    }
+
+    /**
+     * Reads a binary row into a new item
+     * @param in the source of the row
+     * @return the new item
+     * @throws IOException if the source could not be read or does not contain a valid row
+     * @throws ReflectiveOperationException if any field of the item could not be written
+     */
+    @NotNull
+    T read(@NotNull DataInput in) throws IOException, ReflectiveOperationException {
+        if (in.readShort() != MAGIC) {
+            throw new IOException("Not a binary row");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary row version " + version);
+        }
+        int count = in.readUnsignedShort();
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            Integer position = positions.get(readString(in));
+            order[i] = position != null ? position : -1;
+        }
+        T item = manager.newInstance();
+        boolean[] seen = new boolean[fields.length];
+        for (int i = 0; i < count; i++) {
+            int position = order[i];
+            Object value = readValue(in, in.readByte(), position >= 0 ? types[position] : null);
+            if (position >= 0) {
+                fields[position].set(item, value != null ? value : fields[position].defaultValue);
+                seen[position] = true;
+            }
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (!seen[i]) {
+                fields[i].set(item, fields[i].defaultValue);
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Reads a value with the given tag. Values of fields the entity no longer has are read and discarded
+     * @param type the type of the field receiving the value, or null if there is no such field
+     */
+    private static Object readValue(@NotNull DataInput in, byte tag, Type type) throws IOException {
+        switch (tag) {
+            case NULL:
+                return null;
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return in.readShort();
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case CHAR:
+                return in.readChar();
+            case STRING:
+                return readString(in);
+            case UUID_TAG:
+                return new UUID(in.readLong(), in.readLong());
+            case JSON:
+                String json = readString(in);
+                return type != null ? GSON.fromJson(json, type) : null;
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    private static byte tagOf(@NotNull Class<?> type) {
+        if (byte.class.equals(type) || Byte.class.equals(type)) {
+            return BYTE;
+        }
+        else if (short.class.equals(type) || Short.class.equals(type)) {
+            return SHORT;
+        }
+        else if (int.class.equals(type) || Integer.class.equals(type)) {
+            return INT;
+        }
+        else if (long.class.equals(type) || Long.class.equals(type)) {
+            return LONG;
+        }
+        else if (float.class.equals(type) || Float.class.equals(type)) {
+            return FLOAT;
+        }
+        else if (double.class.equals(type) || Double.class.equals(type)) {
+            return DOUBLE;
+        }
+        else if (boolean.class.equals(type) || Boolean.class.equals(type)) {
+            return BOOLEAN;
+        }
+        else if (char.class.equals(type) || Character.class.equals(type)) {
+            return CHAR;
+        }
+        else if (String.class.equals(type)) {
+            return STRING;
+        }
+        else if (UUID.class.equals(type)) {
+            return UUID_TAG;
+        }
+        return JSON;
+    }
+
+    private static void writeString(@NotNull DataOutput out, @NotNull String value) throws IOException {
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(raw.length);
+        out.write(raw);
+    }
+
+    private static String readString(@NotNull DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] raw = new byte[length];
+        in.readFully(raw);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+}
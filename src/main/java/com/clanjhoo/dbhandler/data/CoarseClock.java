@@ -0,0 +1,54 @@
+package com.clanjhoo.dbhandler.data;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A wall clock that is updated by a background thread, so reading the current time costs a volatile read
+ * instead of a call to System.currentTimeMillis(). The thread only runs while at least one manager is using it
+ */
+final class CoarseClock {
+    private static final long RESOLUTION = 100;
+
+    private static volatile long millis = System.currentTimeMillis();
+    private static ScheduledExecutorService ticker = null;
+    private static int users = 0;
+
+    private CoarseClock() {}
+
+    /**
+     * Returns the current time with a precision of RESOLUTION milliseconds
+     * @return the current time in milliseconds
+     */
+    static long millis() {
+        return millis;
+    }
+
+    /**
+     * Registers a new user of the clock, starting the ticker thread if needed
+     */
+    static synchronized void acquire() {
+        if (users++ > 0) {
+            return;
+        }
+        millis = System.currentTimeMillis();
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DBHandler clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> millis = System.currentTimeMillis(), RESOLUTION, RESOLUTION, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Unregisters a user of the clock, stopping the ticker thread once nobody is using it
+     */
+    static synchronized void release() {
+        if (users == 0 || --users > 0) {
+            return;
+        }
+        ticker.shutdownNow();
+        ticker = null;
+    }
+}
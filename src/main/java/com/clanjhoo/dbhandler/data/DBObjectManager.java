@@ -4,19 +4,28 @@ import com.clanjhoo.dbhandler.annotations.*;
 import com.clanjhoo.dbhandler.events.LoadedDataEvent;
 import com.clanjhoo.dbhandler.utils.Tuple;
 import com.clanjhoo.dbhandler.utils.TriFunction;
+import com.google.gson.Gson;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import javax.management.ObjectName;
+
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.invoke.*;
 import java.lang.reflect.*;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -27,9 +36,11 @@ import java.util.stream.Collectors;
  * @param <T> the type of the objects that will be handled by this manager
  */
 public final class DBObjectManager<T> {
-    private final Map<List<Serializable>, Long> lastChecked = new ConcurrentHashMap<>();
-    private final Map<List<Serializable>, T> itemData = new ConcurrentHashMap<>();
-    private final Map<List<Serializable>, BukkitTask> loadTasks = new ConcurrentHashMap<>();
+    private final EntityCache<DataKey, T> itemData;
+    private final Map<DataKey, SharedLoad<T>> loadTasks = new ConcurrentHashMap<>();
+    private final Map<DataKey, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<DataKey> dirtyKeys = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<DataKey.UUIDProbe> uuidProbe = ThreadLocal.withInitial(DataKey.UUIDProbe::new);
     private final DatabaseDriver<T> driver;
     private final JavaPlugin plugin;
     private final Logger logger;
@@ -39,10 +50,37 @@ public final class DBObjectManager<T> {
     private final Predicate<T> saveCondition;
     private TableData tableData;
     private boolean dataInitialized;
+    private boolean clockReleased = false;
+    private boolean closed = false;
+    private volatile ThreadPoolExecutor ioExecutor;
+    private final Queue<DataKey> pendingLoads = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingLoadCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile long loadBatchWindow = DEFAULT_LOAD_WINDOW;
+    private volatile int loadBatchSize = DEFAULT_LOAD_BATCH;
+    private volatile WriteBehindQueue writeBehind = null;
+    private volatile KeyFilter keyFilter = null;
+    private volatile KeyFilter buildingKeyFilter = null;
+    // Saves hold it shared while they record and write their keys, so the key filter scan can wait for them
+    private final ReadWriteLock keyFilterLock = new ReentrantReadWriteLock();
+    private final MetricsRecorder metrics = new MetricsRecorder();
+    private ObjectName metricsName = null;
     private Map<String, FieldData> fieldDataList;
+    private Supplier<T> constructor;
+    private FieldData[] fields;
+    private FieldData[] primaryKeyFields;
+    private FieldData[] enforcedDefaults;
     private Map<String, Tuple<String, String>> foreigns;
 
 
+    private static final Gson SNAPSHOT_GSON = new Gson();
+    private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<>(Arrays.asList(Boolean.class, Byte.class,
+            Short.class, Integer.class, Long.class, Float.class, Double.class, Character.class, String.class, UUID.class));
+    private static final int DEFAULT_IO_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int DEFAULT_IO_QUEUE = 4096;
+    private static final long DEFAULT_LOAD_WINDOW = 5;
+    private static final int DEFAULT_LOAD_BATCH = 100;
+
     private static Object stringToSerializable(Class<?> type, String value) {
         Object defVal;
         if (String.class.isAssignableFrom(type)) {
@@ -136,7 +174,7 @@ public final class DBObjectManager<T> {
         return (T) Array.get(Array.newInstance(clazz, 1), 0);
     }
 
-    private static <T> Map<String, FieldData> getFieldInfo(Class<T> meself) {
+    private static <T> Map<String, FieldData> getFieldInfo(Class<T> meself, MethodHandles.Lookup lookup) {
         return Arrays.stream(meself.getDeclaredFields())
                 .filter(f -> !Modifier.isTransient(f.getModifiers())
                         && !Modifier.isFinal(f.getModifiers())
@@ -160,10 +198,59 @@ public final class DBObjectManager<T> {
                         if (!dann.value().isEmpty() || dann.enforceValue())
                             defVal = stringToSerializable(type, dann.value());
                     }
-                    return new FieldData(f.isAnnotationPresent(PrimaryKey.class), name, defVal, f, !f.isAnnotationPresent(NotNullField.class));
+                    try {
+                        return new FieldData(f.isAnnotationPresent(PrimaryKey.class), name, defVal, f, !f.isAnnotationPresent(NotNullField.class), lookup);
+                    }
+                    catch (IllegalAccessException ex) {
+                        throw new IllegalArgumentException("Unable to access the field " + f.getName() + " of " + meself.getName(), ex);
+                    }
                 }).collect(Collectors.toMap(fd -> fd.name, fd -> fd));
     }
 
+    /**
+     * Compiles the no-arguments constructor of the class into a Supplier, so instantiating it does not go through reflection.
+     * The Supplier is generated with LambdaMetafactory when the lookup allows it. Since Java 14 a lookup from
+     * privateLookupIn lacks the module access it needs, so on current servers the constructor is called through its
+     * method handle instead, which still skips the access checks of reflection but is not inlined like a lambda
+     * @param clazz the class to instantiate
+     * @param lookup a lookup with private access to the class
+     * @param logger the logger used to report the fallback to the method handle
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> compileConstructor(Class<T> clazz, MethodHandles.Lookup lookup, Logger logger) {
+        MethodHandle handle;
+        try {
+            handle = lookup.findConstructor(clazz, MethodType.methodType(void.class));
+        }
+        catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException("The class " + clazz.getName() + " needs a constructor without parameters", ex);
+        }
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    handle,
+                    MethodType.methodType(clazz));
+            return (Supplier<T>) site.getTarget().invoke();
+        }
+        catch (Throwable ex) {
+            // Fall back to invoking the handle directly
+            logger.log(Level.FINE, "Instantiating " + clazz.getName() + " through a method handle, the constructor lambda could not be generated: " + ex);
+            MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return (T) generic.invokeExact();
+                }
+                catch (RuntimeException | Error e) {
+                    throw e;
+                }
+                catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        }
+    }
+
     private void initializeTableData() {
         String tableName = meself.getSimpleName();
         if (!meself.isAnnotationPresent(Entity.class)) {
@@ -175,7 +262,24 @@ public final class DBObjectManager<T> {
         }
         dataInitialized = TableData.findTableData(tableName) != null;
         tableData = TableData.getTableData(tableName);
-        fieldDataList = DBObjectManager.getFieldInfo(meself);
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(meself, MethodHandles.lookup());
+        }
+        catch (IllegalAccessException ex) {
+            throw new IllegalArgumentException("Unable to access the members of " + meself.getName(), ex);
+        }
+        constructor = compileConstructor(meself, lookup, logger);
+        fieldDataList = DBObjectManager.getFieldInfo(meself, lookup);
+        fields = fieldDataList.values().stream()
+                .sorted(Comparator.comparing(fd -> fd.name))
+                .toArray(FieldData[]::new);
+        enforcedDefaults = Arrays.stream(fields)
+                .filter(fd -> {
+                    DataField fAnn = fd.field.getAnnotation(DataField.class);
+                    return fAnn != null && (!fAnn.value().isEmpty() || fAnn.enforceValue());
+                })
+                .toArray(FieldData[]::new);
         fieldDataList.forEach((n, fd) -> {
             String fieldType = null;
             if (fd.field.isAnnotationPresent(DataField.class)) {
@@ -192,12 +296,14 @@ public final class DBObjectManager<T> {
             }
         });
 
+        primaryKeyFields = Arrays.stream(fields)
+                .filter(fd -> fd.isPrimary)
+                .toArray(FieldData[]::new);
+        String[] primaryKeyNames = Arrays.stream(primaryKeyFields)
+                .map(fd -> fd.name)
+                .toArray(String[]::new);
         if (!dataInitialized) {
-            tableData.setPrimaryKeys(fieldDataList.values().stream()
-                    .filter(fd -> fd.isPrimary)
-                    .map(fd -> fd.name)
-                    .sorted()
-                    .toArray(String[]::new));
+            tableData.setPrimaryKeys(primaryKeyNames);
         }
 
         if (!dataInitialized) {
@@ -254,12 +360,16 @@ public final class DBObjectManager<T> {
      * @param clazz The class of the object to manage
      * @param plugin The plugin that has created the object
      * @param type Type of the storage driver
-     * @param eventFactory A supplier that returns the event that will be fired whenever the data has been successfully loaded
+     * @param eventFactory A supplier that returns the event that will be fired whenever the data has been successfully loaded. null means no event will be fired
      * @param saveCondition A predicate that determines if an item has to be stored in the database or deleted. null means save all
      * @param inactiveTime Time in milliseconds to remove inactive items from the manager. A negative number means never inactive
      * @param config Any config options needed by the selected storage driver type
-     * @see JSONDriver#JSONDriver(JavaPlugin plugin, DBObjectManager manager, String storageFolderName)
-     * @see MariaDBDriver#MariaDBDriver(JavaPlugin plugin, DBObjectManager manager, String host, int port, String database, String username, String password, String prefix)
+     * @see JSONDriver#JSONDriver(JavaPlugin plugin, DBObjectManager manager, String storageFolderName, Map options, boolean binary)
+     * @see LogDriver#LogDriver(JavaPlugin plugin, DBObjectManager manager, String storageFolderName, Map options)
+     * @see MappedDriver#MappedDriver(JavaPlugin plugin, DBObjectManager manager, String storageFolderName, Map options)
+     * @see MemoryDriver#MemoryDriver(JavaPlugin plugin, DBObjectManager manager, Map options)
+     * @see SQLiteDriver#SQLiteDriver(JavaPlugin plugin, DBObjectManager manager, String fileName, Map options)
+     * @see MariaDBDriver#MariaDBDriver(JavaPlugin plugin, DBObjectManager manager, String host, int port, String database, String username, String password, String prefix, Map options)
      * @throws IOException if there was an error while creating the table / folder
      * @throws IllegalArgumentException if the chosen storage type has not yet been implemented
      */
@@ -284,14 +394,61 @@ public final class DBObjectManager<T> {
         else {
             this.inactiveTime = inactiveTime;
         }
+        this.itemData = new EntityCache<>(Long.MAX_VALUE, this.inactiveTime);
+        this.ioExecutor = createExecutor(DEFAULT_IO_THREADS, DEFAULT_IO_QUEUE);
 
         switch(type) {
             case JSON:
+            case BINARY:
+                if (config.length < 1 || !(config[0] instanceof String)) {
+                    logger.log(Level.SEVERE, "File driver needs: <name of the storage folder> [options map]");
+                    throw new IllegalArgumentException("Wrong config parameters, check the console for further details");
+                }
+                Map<String, ?> jsonOptions = Collections.emptyMap();
+                if (config.length > 1 && config[1] instanceof Map) {
+                    jsonOptions = (Map<String, ?>) config[1];
+                }
+                this.driver = new JSONDriver<>(plugin, this, (String) config[0], jsonOptions, type == StorageType.BINARY);
+                break;
+            case LOG:
                 if (config.length < 1 || !(config[0] instanceof String)) {
-                    logger.log(Level.SEVERE, "JSON driver needs: <name of the storage folder>");
+                    logger.log(Level.SEVERE, "Log driver needs: <name of the storage folder> [options map]");
                     throw new IllegalArgumentException("Wrong config parameters, check the console for further details");
                 }
-                this.driver = new JSONDriver<>(plugin, this, (String) config[0]);
+                Map<String, ?> logOptions = Collections.emptyMap();
+                if (config.length > 1 && config[1] instanceof Map) {
+                    logOptions = (Map<String, ?>) config[1];
+                }
+                this.driver = new LogDriver<>(plugin, this, (String) config[0], logOptions);
+                break;
+            case MAPPED:
+                if (config.length < 1 || !(config[0] instanceof String)) {
+                    logger.log(Level.SEVERE, "Memory-mapped driver needs: <name of the storage folder> [options map]");
+                    throw new IllegalArgumentException("Wrong config parameters, check the console for further details");
+                }
+                Map<String, ?> mappedOptions = Collections.emptyMap();
+                if (config.length > 1 && config[1] instanceof Map) {
+                    mappedOptions = (Map<String, ?>) config[1];
+                }
+                this.driver = new MappedDriver<>(plugin, this, (String) config[0], mappedOptions);
+                break;
+            case SQLITE:
+                if (config.length < 1 || !(config[0] instanceof String)) {
+                    logger.log(Level.SEVERE, "SQLite driver needs: <name of the database file> [options map]");
+                    throw new IllegalArgumentException("Wrong config parameters, check the console for further details");
+                }
+                Map<String, ?> sqliteOptions = Collections.emptyMap();
+                if (config.length > 1 && config[1] instanceof Map) {
+                    sqliteOptions = (Map<String, ?>) config[1];
+                }
+                this.driver = new SQLiteDriver<>(plugin, this, (String) config[0], sqliteOptions);
+                break;
+            case MEMORY:
+                Map<String, ?> memoryOptions = Collections.emptyMap();
+                if (config.length > 0 && config[0] instanceof Map) {
+                    memoryOptions = (Map<String, ?>) config[0];
+                }
+                this.driver = new MemoryDriver<>(plugin, this, memoryOptions);
                 break;
             case MYSQL:
             case MARIADB:
@@ -302,10 +459,14 @@ public final class DBObjectManager<T> {
                         !(config[3] instanceof String) ||
                         !(config[4] instanceof String) ||
                         !(config[5] instanceof String)) {
-                    logger.log(Level.SEVERE, "MySQL driver needs: <hostname> <port> <database> <username> <password> <table_prefix>");
+                    logger.log(Level.SEVERE, "MySQL driver needs: <hostname> <port> <database> <username> <password> <table_prefix> [options map]");
                     throw new IllegalArgumentException("Wrong config parameters, check the console for further details");
                 }
-                this.driver = new MariaDBDriver<>(plugin, this, (String) config[0], (int) config[1], (String) config[2], (String) config[3], (String) config[4], (String) config[5]);
+                Map<String, ?> options = Collections.emptyMap();
+                if (config.length > 6 && config[6] instanceof Map) {
+                    options = (Map<String, ?>) config[6];
+                }
+                this.driver = new MariaDBDriver<>(plugin, this, (String) config[0], (int) config[1], (String) config[2], (String) config[3], (String) config[4], (String) config[5], options);
                 break;
             default:
                 this.driver = null;
@@ -313,7 +474,19 @@ public final class DBObjectManager<T> {
         if (this.driver == null) {
             throw new IllegalArgumentException("Unsupported storage type " + type);
         }
-        createTable();
+        try {
+            createTable();
+        }
+        catch (IOException | RuntimeException ex) {
+            driver.close();
+            ioExecutor.shutdownNow();
+            throw ex;
+        }
+        // Acquired once nothing else can fail, as a manager that could not be built is never stopped to release it
+        if (this.inactiveTime != Long.MAX_VALUE) {
+            CoarseClock.acquire();
+        }
+        this.metricsName = MetricsRecorder.register(plugin.getName(), tableData.getName(), this::getMetrics, logger);
     }
 
     /**
@@ -323,18 +496,31 @@ public final class DBObjectManager<T> {
      */
     @NotNull
     protected T getDefault() throws ReflectiveOperationException {
-        T def = meself.getDeclaredConstructor().newInstance();
-        for (FieldData fd : fieldDataList.values()) {
-            if (fd.field.isAnnotationPresent(DataField.class)) {
-                DataField fAnn = fd.field.getAnnotation(DataField.class);
-                if (!fAnn.value().isEmpty() || fAnn.enforceValue()) {
-                    setValue(def, fd.field, fd.defaultValue);
-                }
-            }
+        T def = constructor.get();
+        for (FieldData fd : enforcedDefaults) {
+            fd.set(def, fd.defaultValue);
+        }
+        return def;
+    }
+
+    @NotNull
+    private T getDefault(@NotNull DataKey key) throws ReflectiveOperationException {
+        T def = getDefault();
+        for (int i = 0; i < primaryKeyFields.length; i++) {
+            primaryKeyFields[i].set(def, key.get(i));
         }
         return def;
     }
 
+    /**
+     * Instantiates an object of the handled type T without assigning any value to its fields
+     * @return the new instance of the object
+     */
+    @NotNull
+    T newInstance() {
+        return constructor.get();
+    }
+
     /**
      * Instantiates an object of the default type with the data contained in the data map
      * @param data a map which maps the name of a field with the data to put in said field
@@ -345,7 +531,7 @@ public final class DBObjectManager<T> {
      */
     @NotNull
     protected T getInstance(@NotNull Map<String, Serializable> data, boolean strict) throws ReflectiveOperationException {
-        T def = meself.getDeclaredConstructor().newInstance();
+        T def = constructor.get();
         if (strict) {
             for (String name : data.keySet()) {
                 if (!fieldDataList.containsKey(name)) {
@@ -353,14 +539,13 @@ public final class DBObjectManager<T> {
                 }
             }
         }
-        for (Map.Entry<String, FieldData> entry : fieldDataList.entrySet()) {
-            FieldData fd = entry.getValue();
-            Serializable value = data.get(entry.getKey());
+        for (FieldData fd : fields) {
+            Serializable value = data.get(fd.name);
             if (value != null) {
-                setValue(def, fd.field, value);
+                fd.set(def, value);
             }
             else {
-                setValue(def, fd.field, fd.defaultValue);
+                fd.set(def, fd.defaultValue);
             }
         }
         return def;
@@ -387,42 +572,7 @@ public final class DBObjectManager<T> {
         if (fd == null) {
             throw new IllegalArgumentException("The field " + field + " is not defined for the table " + tableData.getName());
         }
-        setValue(obj, fd.field, value);
-    }
-
-    private void setValue(T obj, Field field, Object value) throws ReflectiveOperationException {
-        Class<?> type = field.getType();
-        if (UUID.class.isAssignableFrom(type) && value instanceof String) {
-            value = UUID.fromString((String) value);
-        }
-        else if (value instanceof Number) {
-            if (Byte.class.isAssignableFrom(type)) {
-                value = ((Number) value).byteValue();
-            }
-            else if (Short.class.isAssignableFrom(type)) {
-                value = ((Number) value).shortValue();
-            }
-            else if (Integer.class.isAssignableFrom(type)) {
-                value = ((Number) value).intValue();
-            }
-            else if (Long.class.isAssignableFrom(type)) {
-                value = ((Number) value).longValue();
-            }
-            else if (Float.class.isAssignableFrom(type)) {
-                value = ((Number) value).floatValue();
-            }
-            else if (Double.class.isAssignableFrom(type)) {
-                value = ((Number) value).doubleValue();
-            }
-        }
-
-        try {
-            field.set(obj, value);
-        }
-        catch (IllegalAccessException ex) {
-            field.setAccessible(true);
-            field.set(obj, value);
-        }
+        fd.set(obj, value);
     }
 
     /**
@@ -438,19 +588,23 @@ public final class DBObjectManager<T> {
         if (fd == null) {
             throw new IllegalArgumentException("The field " + field + " is not defined for the table " + tableData.getName());
         }
-        return (Serializable) getValue(obj, fd.field);
+        return (Serializable) fd.get(obj);
     }
 
-    private Object getValue(T obj, Field field) throws ReflectiveOperationException {
-        Object val;
-        try {
-            val = field.get(obj);
-        }
-        catch (IllegalAccessException ex) {
-            field.setAccessible(true);
-            val = field.get(obj);
-        }
-        return val;
+    /**
+     * Returns the fields of the handled class, sorted alphabetically by their names
+     * @return the compiled fields
+     */
+    FieldData[] getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the fields composing the primary key, sorted alphabetically by their names
+     * @return the compiled primary key fields
+     */
+    FieldData[] getPrimaryKeyFields() {
+        return primaryKeyFields;
     }
 
     /**
@@ -464,7 +618,7 @@ public final class DBObjectManager<T> {
         if (fd == null) {
             throw new IllegalArgumentException("The field " + field + " is not defined for the table " + tableData.getName());
         }
-        Class<?> fieldType = fd.field.getType();
+        Class<?> fieldType = fd.type;
         if (!fieldType.isPrimitive() && !Serializable.class.isAssignableFrom(fieldType)) {
             throw new ClassCastException("The field " + field + " is not serializable. Class: " + fieldType.getName());
         }
@@ -479,22 +633,207 @@ public final class DBObjectManager<T> {
      */
     protected Map<String, Serializable> toMap(T obj) throws ReflectiveOperationException {
         Map<String, Serializable> data = new HashMap<>();
-        for (Map.Entry<String, FieldData> entry : fieldDataList.entrySet()) {
-            FieldData fd = entry.getValue();
-            data.put(entry.getKey(), (Serializable) this.getValue(obj, fd.field));
+        for (FieldData fd : fields) {
+            data.put(fd.name, (Serializable) fd.get(obj));
         }
         return data;
     }
 
-    @SafeVarargs
+    /**
+     * Returns the primary key of the given object, sorted alphabetically by their field names
+     * @param obj the object containing the data
+     * @return the list of values composing the primary key
+     * @throws ReflectiveOperationException if there was an error accessing any field
+     */
+    @NotNull
+    DataKey getKey(@NotNull T obj) throws ReflectiveOperationException {
+        if (primaryKeyFields.length == 1) {
+            return DataKey.ofSingle((Serializable) primaryKeyFields[0].get(obj));
+        }
+        Serializable[] keys = new Serializable[primaryKeyFields.length];
+        for (int i = 0; i < primaryKeyFields.length; i++) {
+            keys[i] = (Serializable) primaryKeyFields[i].get(obj);
+        }
+        return DataKey.ofArray(keys);
+    }
+
+    /**
+     * Converts the values of a key to the types of the primary key fields, so it matches the key of a loaded object
+     * @param key the key to convert
+     * @return the converted key, or the key itself if its values already had the right types
+     */
+    @NotNull
+    DataKey normalizeKey(@NotNull DataKey key) {
+        if (key.size() != primaryKeyFields.length) {
+            throw new IllegalArgumentException("You must specify a value for each primary key defined for the object");
+        }
+        Serializable[] values = null;
+        for (int i = 0; i < primaryKeyFields.length; i++) {
+            Serializable value = key.get(i);
+            Object coerced = primaryKeyFields[i].coerce(value);
+            if (coerced != value) {
+                if (values == null) {
+                    values = key.toArray();
+                }
+                values[i] = (Serializable) coerced;
+            }
+        }
+        return values != null ? DataKey.ofArray(values) : key;
+    }
+
+    /**
+     * A load in flight shared by every request of the same key. It is never handed to callers, they get a copy of it so
+     * completing or cancelling their future does not affect the others
+     */
+    private static final class SharedLoad<T> extends CompletableFuture<T> {
+        // Requests that can still cancel the load, -1 once they all did
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        /**
+         * Counts a new request of this load
+         * @return false if the load has been cancelled by all its requests and a new one must be started
+         */
+        private boolean addWaiter() {
+            int current;
+            do {
+                current = waiters.get();
+                if (current < 0) {
+                    return false;
+                }
+            } while (!waiters.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        /**
+         * Discounts a cancelled request of this load, cancelling the load if no other request waits for it
+         * @return true if the load has been cancelled
+         */
+        private boolean removeWaiter() {
+            if (waiters.decrementAndGet() == 0 && waiters.compareAndSet(0, -1)) {
+                cancel(false);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The stored state of an item when it was last loaded or saved
+     */
+    private static final class Snapshot {
+        private final long hash;
+        private final Object[] values;
+
+        private Snapshot(long hash, @NotNull Object[] values) {
+            this.hash = hash;
+            this.values = values;
+        }
+
+        private boolean matches(@NotNull Snapshot other) {
+            // The hash only rules out changes quickly, the values decide when it is the same
+            return hash == other.hash && Arrays.equals(values, other.values);
+        }
+    }
+
+    /**
+     * Returns a copy of the value that later changes to the field value do not modify
+     * @param value the current value of a field
+     * @return the value itself if it is immutable, or its JSON representation otherwise
+     */
+    @Nullable
+    private static Object snapshotValue(@Nullable Object value) {
+        if (value == null || IMMUTABLE_TYPES.contains(value.getClass()) || value instanceof Enum) {
+            return value;
+        }
+        // Mutable values such as lists or maps are stored as JSON, so changing their contents is noticed
+        return SNAPSHOT_GSON.toJson(value);
+    }
+
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0x100000001b3L;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static long hashValue(@Nullable Object value) {
+        if (value instanceof Double) {
+            return Double.doubleToLongBits((Double) value);
+        }
+        if (value instanceof Float) {
+            return Float.floatToIntBits((Float) value);
+        }
+        if (value instanceof Long) {
+            return (Long) value;
+        }
+        if (value instanceof UUID) {
+            UUID uuid = (UUID) value;
+            return mix(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        }
+        if (value instanceof String) {
+            // Every char is mixed into the 64 bits, as String.hashCode collides too easily ("Aa" and "BB")
+            String text = (String) value;
+            long hash = mix(0xcbf29ce484222325L, text.length());
+            for (int i = 0; i < text.length(); i++) {
+                hash = mix(hash, text.charAt(i));
+            }
+            return hash;
+        }
+        return Objects.hashCode(value);
+    }
+
+    /**
+     * Takes a snapshot of the stored fields of the given object. Used to know if an object has changed since it was last loaded or saved
+     * @param obj the object containing the data
+     * @return the 64 bit hash and a copy of the values of the current state of the object
+     * @throws ReflectiveOperationException if there was an error accessing any field
+     */
     @NotNull
-    private <K> List<K> concatenateArgs(K head, @Nullable K... tail) {
-        if (tail == null)
-            return List.of(head);
-        List<K> result = new ArrayList<>(tail.length + 1);
-        result.add(head);
-        result.addAll(Arrays.asList(tail));
-        return result;
+    private Snapshot getSnapshot(@NotNull T obj) throws ReflectiveOperationException {
+        long hash = 0xcbf29ce484222325L;
+        Object[] values = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = snapshotValue(fields[i].get(obj));
+            hash = mix(hash, hashValue(values[i]));
+        }
+        return new Snapshot(hash, values);
+    }
+
+    private void takeSnapshot(@NotNull DataKey keys, @NotNull T obj) {
+        try {
+            snapshots.put(keys, getSnapshot(obj));
+        }
+        catch (ReflectiveOperationException ex) {
+            // Without a snapshot the item will always be considered dirty
+            snapshots.remove(keys);
+        }
+    }
+
+    private void removeFromMemory(@NotNull DataKey keys) {
+        itemData.remove(keys);
+        clearTracking(keys);
+    }
+
+    private void clearTracking(@NotNull DataKey keys) {
+        snapshots.remove(keys);
+        dirtyKeys.remove(keys);
+    }
+
+    /**
+     * Saves the modified items chosen for eviction and then removes them from memory. Items that could not be saved are kept
+     * @param victims the entries the cache has chosen for eviction
+     */
+    private void evict(@NotNull List<EntityCache.Node<DataKey, T>> victims) {
+        if (victims.isEmpty()) {
+            return;
+        }
+        rawSave(false, victims.stream().map(node -> node.value).collect(Collectors.toList()));
+        for (EntityCache.Node<DataKey, T> node : victims) {
+            if (isDirty(node.key)) {
+                itemData.readmit(node);
+            }
+            else if (itemData.removeEvicted(node)) {
+                clearTracking(node.key);
+            }
+        }
     }
 
     /**
@@ -508,51 +847,393 @@ public final class DBObjectManager<T> {
         }
     }
 
+    private ThreadPoolExecutor createExecutor(int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "DBHandler " + tableData.getName() + " I/O #" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Replaces the executor that runs the load tasks of this manager. Tasks already submitted to the previous executor will still be completed
+     * @param threads the maximum amount of load tasks running at the same time
+     * @param queueCapacity the maximum amount of load tasks waiting to be run. Once full, new loads will fail with a RejectedExecutionException
+     */
+    public void setIOExecutor(int threads, int queueCapacity) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("The amount of threads and the capacity of the queue must be positive");
+        }
+        ThreadPoolExecutor old = ioExecutor;
+        ioExecutor = createExecutor(threads, queueCapacity);
+        old.shutdown();
+    }
+
     /**
-     * Stops all load data tasks that are still running
+     * Stops all load data tasks that are still running. Queued saves are written first. The storage is left open, so the
+     * objects still in memory can be saved afterwards
+     * @see #close()
      */
     public void stopRunningTasks() {
-        loadTasks.values().forEach(BukkitTask::cancel);
+        WriteBehindQueue queue = writeBehind;
+        writeBehind = null;
+        if (queue != null) {
+            queue.close();
+        }
+        pendingLoads.clear();
+        pendingLoadCount.set(0);
+        loadTasks.values().forEach(future -> future.cancel(false));
         loadTasks.clear();
+        ioExecutor.shutdownNow();
+        try {
+            if (!ioExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.log(Level.WARNING, "Some storage tasks of table " + tableData.getName() + " did not finish in time");
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (inactiveTime != Long.MAX_VALUE && !clockReleased) {
+            clockReleased = true;
+            CoarseClock.release();
+        }
+    }
+
+    /**
+     * Stops all running tasks, saves every object still in memory and releases the storage. Meant to be called when the
+     * plugin is disabled, the manager can not be used afterwards. Calling it again does nothing
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        stopRunningTasks();
+        saveAllSync(SaveOperation.SAVE_ALL);
+        driver.close();
+        MetricsRecorder.unregister(metricsName, logger);
+        metricsName = null;
     }
 
     /**
      * Loads the item associated with the specified primary key asynchronously. Then fires an event indicating the result
      * @param key The primary key (if there is a composite primary key, this is the first alphabetically by their field names)
      * @param keys The rest of the primary key in case it's a composite one (sorted alphabetically by their field names)
-     * @return The load data bukkit asynchronous task
+     * @return A task following the load, cancelling it cancels the load if it has not finished yet and no other request waits for it
+     * @deprecated use {@link #loadAsync(Serializable, Serializable...)} instead
      */
+    @Deprecated
     @NotNull
     public BukkitTask loadData(@NotNull Serializable key, @Nullable Serializable... keys) {
-        return loadData(concatenateArgs(key, keys));
+        return loadData(DataKey.of(key, keys));
     }
 
+    /**
+     * Loads the item associated with the specified primary key asynchronously. Then fires an event indicating the result
+     * @param keys List of values the primary keys of the queried object has
+     * @return A task following the load, cancelling it cancels the load if it has not finished yet and no other request waits for it
+     * @deprecated use {@link #loadAsync(List)} instead
+     */
+    @Deprecated
     @NotNull
-    private BukkitTask loadDataLambda(@NotNull List<Serializable> keys) {
-        return Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            T data = null;
-            Exception throwable = null;
-            try {
-                data = driver.loadData(tableData.getName(), keys.toArray(new Serializable[0]));
-                itemData.put(keys, data);
-            }
-            catch (Exception ex) {
-                throwable = ex;
+    public BukkitTask loadData(@NotNull List<Serializable> keys) {
+        return loadData(DataKey.of(keys));
+    }
+
+    @NotNull
+    private BukkitTask loadData(@NotNull DataKey key) {
+        SharedLoad<T> load = startLoad(key);
+        return new LoadTask(plugin, load.copy(), () -> {
+            if (load.removeWaiter()) {
+                // A cancelled load must not be shared with the loads of the same key requested later
+                loadTasks.remove(key, load);
             }
-            loadTasks.remove(keys);
-            LoadedDataEvent<T> event = eventFactory.apply(keys, data, throwable);
-            Bukkit.getPluginManager().callEvent(event);
         });
     }
 
     /**
-     * Loads the item associated with the specified primary key asynchronously. Then fires an event indicating the result
+     * Loads the item associated with the specified primary key in the I/O executor of this manager. Concurrent loads of
+     * the same key share the same load, but every caller gets its own future. If an event factory was provided, an event indicating the result is fired too
+     * @param key The primary key (if there is a composite primary key, this is the first alphabetically by their field names)
+     * @param keys The rest of the primary key in case it's a composite one (sorted alphabetically by their field names)
+     * @return a future that completes with the loaded item, or exceptionally if it could not be loaded
+     */
+    @NotNull
+    public CompletableFuture<T> loadAsync(@NotNull Serializable key, @Nullable Serializable... keys) {
+        return loadAsync(DataKey.of(key, keys));
+    }
+
+    /**
+     * Loads the item associated with the specified primary key in the I/O executor of this manager. Concurrent loads of
+     * the same key share the same load, but every caller gets its own future. If an event factory was provided, an event indicating the result is fired too
      * @param keys List of values the primary keys of the queried object has
-     * @return The load data bukkit asynchronous task
+     * @return a future that completes with the loaded item, or exceptionally if it could not be loaded
      */
     @NotNull
-    public BukkitTask loadData(@NotNull List<Serializable> keys) {
-        return loadTasks.computeIfAbsent(keys, this::loadDataLambda);
+    public CompletableFuture<T> loadAsync(@NotNull List<Serializable> keys) {
+        return loadAsync(DataKey.of(keys));
+    }
+
+    /**
+     * Loads the item associated with the specified primary key in the I/O executor of this manager. Concurrent loads of
+     * the same key share the same load, but every caller gets its own future. If an event factory was provided, an event indicating the result is fired too.
+     * Loads requested within the batching window are queried together
+     * @param key The primary key of the queried object
+     * @return a future that completes with the loaded item, or exceptionally if it could not be loaded
+     * @see #setLoadBatching(long, int)
+     */
+    @NotNull
+    public CompletableFuture<T> loadAsync(@NotNull DataKey key) {
+        // Only the deprecated tasks can cancel the shared load, so this request is never discounted
+        return startLoad(key).copy();
+    }
+
+    /**
+     * Returns the load in flight for the key, starting a new one if there is none, and counts the caller as a request of it
+     * @param key The primary key of the queried object
+     * @param created the list the key is added to if a new load has been created for it
+     * @return the shared load of the key
+     */
+    @NotNull
+    private SharedLoad<T> joinLoad(@NotNull DataKey key, @NotNull List<DataKey> created) {
+        while (true) {
+            SharedLoad<T> load = loadTasks.get(key);
+            if (load == null) {
+                SharedLoad<T> newLoad = new SharedLoad<>();
+                newLoad.addWaiter();
+                load = loadTasks.putIfAbsent(key, newLoad);
+                if (load == null) {
+                    created.add(key);
+                    return newLoad;
+                }
+            }
+            if (load.addWaiter()) {
+                return load;
+            }
+            // Every request of that load cancelled it, it is replaced by a new one
+            loadTasks.remove(key, load);
+        }
+    }
+
+    @NotNull
+    private SharedLoad<T> startLoad(@NotNull DataKey key) {
+        List<DataKey> created = new ArrayList<>(1);
+        SharedLoad<T> load = joinLoad(key, created);
+        if (created.isEmpty()) {
+            return load;
+        }
+        if (loadBatchWindow <= 0) {
+            submitLoad(() -> runLoad(key, load), Collections.singletonList(key));
+        }
+        else {
+            pendingLoads.add(key);
+            if (pendingLoadCount.incrementAndGet() >= loadBatchSize) {
+                submitLoad(this::flushPendingLoads, Collections.emptyList());
+            }
+            else if (flushScheduled.compareAndSet(false, true)) {
+                CompletableFuture.delayedExecutor(loadBatchWindow, TimeUnit.MILLISECONDS,
+                        task -> submitLoad(task, Collections.emptyList()))
+                        .execute(this::flushPendingLoads);
+            }
+        }
+        return load;
+    }
+
+    /**
+     * Loads the items associated with the specified primary keys in the I/O executor of this manager, querying them in
+     * batches instead of one by one. Keys that are already being loaded share that load. If an event
+     * factory was provided, an event indicating the result is fired for every item
+     * @param keys The primary keys of the queried objects
+     * @return a future that completes with a map key -> loaded item, or exceptionally if any of them could not be loaded
+     */
+    @NotNull
+    public CompletableFuture<Map<DataKey, T>> loadAll(@NotNull Collection<DataKey> keys) {
+        Map<DataKey, CompletableFuture<T>> futures = new HashMap<>();
+        List<DataKey> created = new ArrayList<>();
+        for (DataKey key : keys) {
+            if (!futures.containsKey(key)) {
+                futures.put(key, joinLoad(key, created));
+            }
+        }
+        int batchSize = loadBatchSize;
+        for (int start = 0; start < created.size(); start += batchSize) {
+            List<DataKey> batch = new ArrayList<>(created.subList(start, Math.min(start + batchSize, created.size())));
+            submitLoad(() -> runBatchLoad(batch), batch);
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    Map<DataKey, T> result = new HashMap<>();
+                    futures.forEach((key, future) -> result.put(key, future.join()));
+                    return result;
+                });
+    }
+
+    /**
+     * Changes how individual loads are coalesced into batches. A load waits at most windowMillis milliseconds for other
+     * loads to be queried together, and a batch is sent as soon as it reaches maxBatchSize keys
+     * @param windowMillis the maximum time a load waits for other loads, 0 or less disables the coalescing
+     * @param maxBatchSize the maximum amount of keys loaded in a single batch
+     */
+    public void setLoadBatching(long windowMillis, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("The maximum batch size must be positive");
+        }
+        this.loadBatchSize = maxBatchSize;
+        this.loadBatchWindow = windowMillis;
+    }
+
+    private void submitLoad(@NotNull Runnable task, @NotNull Collection<DataKey> keys) {
+        try {
+            ioExecutor.execute(task);
+        }
+        catch (RejectedExecutionException ex) {
+            if (keys.isEmpty()) {
+                // A flush of the pending loads, fail everything still waiting
+                flushScheduled.set(false);
+                keys = drainPendingLoads(Integer.MAX_VALUE);
+            }
+            for (DataKey key : keys) {
+                CompletableFuture<T> future = loadTasks.remove(key);
+                if (future != null) {
+                    future.completeExceptionally(ex);
+                }
+            }
+        }
+    }
+
+    private List<DataKey> drainPendingLoads(int amount) {
+        List<DataKey> keys = new ArrayList<>();
+        DataKey key;
+        while (keys.size() < amount && (key = pendingLoads.poll()) != null) {
+            pendingLoadCount.decrementAndGet();
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private void flushPendingLoads() {
+        flushScheduled.set(false);
+        List<DataKey> batch = drainPendingLoads(loadBatchSize);
+        while (!batch.isEmpty()) {
+            runBatchLoad(batch);
+            batch = drainPendingLoads(loadBatchSize);
+        }
+    }
+
+    private void runBatchLoad(@NotNull List<DataKey> keys) {
+        Map<DataKey, CompletableFuture<T>> futures = new HashMap<>();
+        for (DataKey key : keys) {
+            CompletableFuture<T> future = loadTasks.get(key);
+            if (future == null) {
+                continue;
+            }
+            if (future.isDone()) {
+                // Cancelled by all its requests, it must not be handed to the loads of the key requested later
+                loadTasks.remove(key, future);
+            }
+            else {
+                futures.put(key, future);
+            }
+        }
+        if (futures.isEmpty()) {
+            return;
+        }
+        if (futures.size() == 1) {
+            Map.Entry<DataKey, CompletableFuture<T>> entry = futures.entrySet().iterator().next();
+            runLoad(entry.getKey(), entry.getValue());
+            return;
+        }
+        Map<DataKey, T> loaded = null;
+        Exception throwable = null;
+        try {
+            List<DataKey> stored = new ArrayList<>(futures.size());
+            Map<DataKey, T> absent = new HashMap<>();
+            for (DataKey key : futures.keySet()) {
+                if (isAbsent(key)) {
+                    absent.put(key, getDefault(key));
+                }
+                else {
+                    stored.add(key);
+                }
+            }
+            if (stored.isEmpty()) {
+                loaded = new HashMap<>();
+            }
+            else {
+                metrics.loadBatchSize.record(stored.size());
+                long start = System.nanoTime();
+                loaded = new HashMap<>(driver.loadData(tableData.getName(), stored));
+                metrics.batchLoadLatency.recordSince(start);
+            }
+            loaded.putAll(absent);
+        }
+        catch (Exception ex) {
+            metrics.driverErrors.increment();
+            throwable = ex;
+        }
+        List<EntityCache.Node<DataKey, T>> victims = new ArrayList<>();
+        for (Map.Entry<DataKey, CompletableFuture<T>> entry : futures.entrySet()) {
+            T data = loaded != null ? loaded.get(entry.getKey()) : null;
+            Exception error = throwable;
+            if (error == null && data == null) {
+                error = new NoSuchElementException("The driver did not return the item " + entry.getKey());
+            }
+            victims.addAll(completeLoad(entry.getKey(), entry.getValue(), data, error));
+        }
+        evict(victims);
+    }
+
+    private void runLoad(@NotNull DataKey key, @NotNull CompletableFuture<T> future) {
+        if (future.isDone()) {
+            // Cancelled by all its requests, it must not be handed to the loads of the key requested later
+            loadTasks.remove(key, future);
+            return;
+        }
+        T data = null;
+        Exception throwable = null;
+        try {
+            if (isAbsent(key)) {
+                data = getDefault(key);
+            }
+            else {
+                metrics.loadBatchSize.record(1);
+                long start = System.nanoTime();
+                data = driver.loadData(tableData.getName(), key);
+                metrics.loadLatency.recordSince(start);
+            }
+        }
+        catch (Exception ex) {
+            metrics.driverErrors.increment();
+            throwable = ex;
+        }
+        evict(completeLoad(key, future, data, throwable));
+    }
+
+    private List<EntityCache.Node<DataKey, T>> completeLoad(@NotNull DataKey key, @NotNull CompletableFuture<T> future, @Nullable T data, @Nullable Exception throwable) {
+        List<EntityCache.Node<DataKey, T>> victims = Collections.emptyList();
+        if (throwable == null) {
+            takeSnapshot(key, data);
+            victims = itemData.put(key, data);
+        }
+        loadTasks.remove(key, future);
+        if (throwable == null) {
+            future.complete(data);
+        }
+        else {
+            data = null;
+            future.completeExceptionally(throwable);
+        }
+        if (eventFactory != null) {
+            LoadedDataEvent<T> event = eventFactory.apply(key.toList(), data, throwable);
+            Bukkit.getPluginManager().callEvent(event);
+        }
+        return victims;
     }
 
     /**
@@ -561,10 +1242,34 @@ public final class DBObjectManager<T> {
      * @return The item associated with the key, null if it has not been loaded
      */
     public @Nullable T tryGetDataNow(@NotNull List<Serializable> keys) {
-        return itemData.computeIfAbsent(keys, (k) -> {
-            loadTasks.computeIfAbsent(k, this::loadDataLambda);
-            return null;
-        });
+        return tryGetDataNow(DataKey.of(keys));
+    }
+
+    /**
+     * Return the object associated with the specified primary key if it's already in memory. Otherwise return null
+     * @param key The primary key of the queried object
+     * @return The item associated with the key, null if it has not been loaded
+     */
+    public @Nullable T tryGetDataNow(@NotNull DataKey key) {
+        T item = itemData.get(key);
+        if (item == null) {
+            loadAsync(key);
+        }
+        return item;
+    }
+
+    /**
+     * Return the object associated with the specified primary key if it's already in memory. Otherwise return null.
+     * Looking up an object that is already in memory does not allocate
+     * @param key The primary key, for objects whose primary key is a single UUID
+     * @return The item associated with the key, null if it has not been loaded
+     */
+    public @Nullable T tryGetDataNow(@NotNull UUID key) {
+        T item = itemData.get(uuidProbe.get().set(key));
+        if (item == null) {
+            loadAsync(DataKey.of(key));
+        }
+        return item;
     }
 
 
@@ -575,9 +1280,134 @@ public final class DBObjectManager<T> {
      * @return The item associated with the key, null if it has not been loaded
      */
     public @Nullable T tryGetDataNow(@NotNull Serializable key, @Nullable Serializable... keys) {
-        return tryGetDataNow(concatenateArgs(key, keys));
+        return tryGetDataNow(DataKey.of(key, keys));
+    }
+
+
+    /**
+     * Mark the object associated with the specified primary key as modified, so it will be written on the next save even if its fields look unchanged.
+     * Objects are also considered modified whenever the value of any of their fields differs from the one they had when they were last loaded or saved
+     * @param keys The primary key (if there is more than one field set as the primary key, their values have to be sorted alphabetically by their field names)
+     */
+    public void markDirty(@NotNull List<Serializable> keys) {
+        markDirty(DataKey.of(keys));
+    }
+
+    /**
+     * Mark the object associated with the specified primary key as modified, so it will be written on the next save even if its fields look unchanged.
+     * Objects are also considered modified whenever the value of any of their fields differs from the one they had when they were last loaded or saved
+     * @param key The primary key of the modified object
+     */
+    public void markDirty(@NotNull DataKey key) {
+        if (itemData.containsKey(key)) {
+            dirtyKeys.add(key);
+        }
+    }
+
+    /**
+     * Mark the object associated with the specified primary key as modified, so it will be written on the next save even if its fields look unchanged.
+     * Objects are also considered modified whenever the value of any of their fields differs from the one they had when they were last loaded or saved
+     * @param key The primary key (if there is a composite primary key, this is the first alphabetically by their field names)
+     * @param keys The rest of the primary key in case it's a composite one (sorted alphabetically by their field names)
+     */
+    public void markDirty(@NotNull Serializable key, @Nullable Serializable... keys) {
+        markDirty(DataKey.of(key, keys));
+    }
+
+    /**
+     * Return if the object associated with the specified primary key has been modified since it was last loaded or saved
+     * @param keys The primary key (if there is more than one field set as the primary key, their values have to be sorted alphabetically by their field names)
+     * @return Whether the item is loaded and has unsaved changes or not
+     */
+    public boolean isDirty(@NotNull List<Serializable> keys) {
+        return isDirty(DataKey.of(keys));
+    }
+
+    /**
+     * Return if the object associated with the specified primary key has been modified since it was last loaded or saved
+     * @param keys The primary key of the queried object
+     * @return Whether the item is loaded and has unsaved changes or not
+     */
+    public boolean isDirty(@NotNull DataKey keys) {
+        T item = itemData.peek(keys);
+        if (item == null) {
+            return false;
+        }
+        if (dirtyKeys.contains(keys)) {
+            return true;
+        }
+        Snapshot snapshot = snapshots.get(keys);
+        try {
+            return snapshot == null || !snapshot.matches(getSnapshot(item));
+        }
+        catch (ReflectiveOperationException ex) {
+            return true;
+        }
+    }
+
+    /**
+     * Sets the maximum amount of objects this manager will keep in memory. Once exceeded, the objects that have been used
+     * the least are saved if they have been modified and then removed from memory. Objects that have only been queried once
+     * are evicted before the ones that are queried regularly
+     * @param maximumSize the maximum amount of objects to keep in memory. A negative number or zero means unbounded
+     */
+    public void setMaximumSize(long maximumSize) {
+        itemData.setMaximumSize(maximumSize > 0 ? maximumSize : Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the amount of objects currently kept in memory
+     * @return the amount of objects in memory
+     */
+    public int getCacheSize() {
+        return itemData.size();
     }
 
+    /**
+     * Returns the amount of times tryGetDataNow has found the queried object in memory
+     * @return the amount of cache hits
+     */
+    public long getCacheHitCount() {
+        return itemData.hitCount();
+    }
+
+    /**
+     * Returns the amount of times tryGetDataNow has not found the queried object in memory
+     * @return the amount of cache misses
+     */
+    public long getCacheMissCount() {
+        return itemData.missCount();
+    }
+
+    /**
+     * Returns the amount of objects that have been removed from memory to keep the amount of objects below the maximum size
+     * @return the amount of evictions
+     * @see #setMaximumSize(long maximumSize)
+     */
+    public long getCacheEvictionCount() {
+        return itemData.evictionCount();
+    }
+
+    /**
+     * Takes a snapshot of the metrics of this manager: storage latencies, batch sizes, cache counters, loads in flight,
+     * driver errors and connection pool waits. The same metrics are exported through JMX as a ManagerMetricsMXBean.
+     * Taking a snapshot does not block the manager, so it can be polled regularly
+     * @return the snapshot of the metrics
+     * @see ManagerMetricsMXBean
+     */
+    @NotNull
+    public ManagerMetrics getMetrics() {
+        return metrics.snapshot(tableData.getName(), itemData.size(), itemData.hitCount(), itemData.missCount(), itemData.evictionCount(), loadTasks.size());
+    }
+
+    /**
+     * Returns the recorder of the metrics of this manager, so its driver can record its own metrics
+     * @return the metrics recorder
+     */
+    @NotNull
+    MetricsRecorder getMetricsRecorder() {
+        return metrics;
+    }
 
     /**
      * Return if the specified object is already stored in the database
@@ -587,7 +1417,30 @@ public final class DBObjectManager<T> {
      * @throws IOException if the selected StorageType stores data using files and folders and there was an exception while accessing them
      */
     public boolean exists(@NotNull List<Serializable> keys) throws IOException, SQLException {
-        return driver.contains(tableData.getName(), keys.toArray(new Serializable[0]));
+        return exists(DataKey.of(keys));
+    }
+
+    /**
+     * Return if the specified object is already stored in the database
+     * @param key The primary key of the queried object
+     * @return Whether the item exists or not
+     * @throws SQLException if the selected StorageType uses an SQL database and there was an exception while querying it
+     * @throws IOException if the selected StorageType stores data using files and folders and there was an exception while accessing them
+     */
+    public boolean exists(@NotNull DataKey key) throws IOException, SQLException {
+        if (isAbsent(key)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            boolean contained = driver.contains(tableData.getName(), key);
+            metrics.existsLatency.recordSince(start);
+            return contained;
+        }
+        catch (IOException | SQLException | RuntimeException ex) {
+            metrics.driverErrors.increment();
+            throw ex;
+        }
     }
 
 
@@ -600,7 +1453,7 @@ public final class DBObjectManager<T> {
      * @throws IOException if the selected StorageType stores data using files and folders and there was an exception while accessing them
      */
     public boolean exists(@NotNull Serializable key, @Nullable Serializable... keys) throws IOException, SQLException {
-        return exists(concatenateArgs(key, keys));
+        return exists(DataKey.of(key, keys));
     }
 
 
@@ -614,9 +1467,15 @@ public final class DBObjectManager<T> {
     public boolean delete(@NotNull T item) throws IOException, SQLException {
         boolean res = false;
         try {
+            long start = System.nanoTime();
             res = driver.deleteData(tableData.getName(), item);
+            metrics.deleteLatency.recordSince(start);
+            if (!res) {
+                metrics.driverErrors.increment();
+            }
         }
         catch (Exception ex) {
+            metrics.driverErrors.increment();
             logger.log(Level.SEVERE, "Could not save data on table " + tableData.getName() + "!");
             ex.printStackTrace();
         }
@@ -628,46 +1487,84 @@ public final class DBObjectManager<T> {
             return;
         }
         try {
+            // Only the items that changed since they were last loaded or saved are written
+            Map<DataKey, Snapshot> newSnapshots = new HashMap<>();
+            List<T> dirtyItems = new ArrayList<>();
+            for (T item : items) {
+                DataKey key = getKey(item);
+                Snapshot current = getSnapshot(item);
+                Snapshot snapshot = snapshots.get(key);
+                boolean marked = dirtyKeys.remove(key);
+                if (marked || snapshot == null || !snapshot.matches(current)) {
+                    newSnapshots.put(key, current);
+                    dirtyItems.add(item);
+                }
+                else if (delete) {
+                    removeFromMemory(key);
+                }
+            }
+            if (dirtyItems.isEmpty()) {
+                return;
+            }
+            Map<DataKey, Boolean> results = new HashMap<>();
             if (saveCondition != null) {
-                List<T> toDelete = items.stream().filter((item) -> !saveCondition.test(item)).collect(Collectors.toList());
-                items = items.stream().filter(saveCondition).collect(Collectors.toList());
-                driver.deleteData(tableData.getName(), toDelete);
-            }
-            Map<List<Serializable>, Boolean> results = driver.saveData(tableData.getName(), items);
-            if (delete) {
-                for (Map.Entry<List<Serializable>, Boolean> entry : results.entrySet()) {
-                    if (entry.getValue()) {
-                        itemData.remove(entry.getKey());
-                        lastChecked.remove(entry.getKey());
+                List<T> toDelete = dirtyItems.stream().filter((item) -> !saveCondition.test(item)).collect(Collectors.toList());
+                dirtyItems = dirtyItems.stream().filter(saveCondition).collect(Collectors.toList());
+                long start = System.nanoTime();
+                results.putAll(driver.deleteData(tableData.getName(), toDelete));
+                if (!toDelete.isEmpty()) {
+                    metrics.deleteLatency.recordSince(start);
+                }
+            }
+            long start;
+            keyFilterLock.readLock().lock();
+            try {
+                // Record the keys before writing them, so they are never stored while the filter says they are absent
+                recordStored(dirtyItems);
+                start = System.nanoTime();
+                results.putAll(driver.saveData(tableData.getName(), dirtyItems));
+            }
+            finally {
+                keyFilterLock.readLock().unlock();
+            }
+            if (!dirtyItems.isEmpty()) {
+                metrics.saveLatency.recordSince(start);
+                metrics.saveBatchSize.record(dirtyItems.size());
+            }
+            for (Map.Entry<DataKey, Boolean> entry : results.entrySet()) {
+                DataKey key = entry.getKey();
+                if (entry.getValue()) {
+                    if (delete) {
+                        removeFromMemory(key);
                     }
-                    else {
-                        logger.log(Level.SEVERE, "Could not save an item on table " + tableData.getName() + "!");
+                    else if (itemData.containsKey(key) && newSnapshots.containsKey(key)) {
+                        snapshots.put(key, newSnapshots.get(key));
                     }
                 }
+                else {
+                    dirtyKeys.add(key);
+                    metrics.driverErrors.increment();
+                    logger.log(Level.SEVERE, "Could not save an item on table " + tableData.getName() + "!");
+                }
             }
         }
         catch (Exception ex) {
+            metrics.driverErrors.increment();
             logger.log(Level.SEVERE, "Could not save data on table " + tableData.getName() + "!");
             ex.printStackTrace();
         }
     }
 
-    private void save(boolean async, boolean delete, @NotNull Collection<List<Serializable>> keys) {
+    private void save(boolean async, boolean delete, @NotNull Collection<DataKey> keys) {
         if (keys.isEmpty()) {
             return;
         }
         List<T> items = new ArrayList<>();
-        for (List<Serializable> key : keys) {
-            try {
-                T item = tryGetDataNow(key);
+        for (DataKey key : keys) {
+            T item = itemData.peek(key);
+            if (item != null) {
                 items.add(item);
             }
-            catch (Exception ex) {
-                logger.log(Level.WARNING, "Error while preparing item for saving it. Key: "
-                        + key.stream()
-                                .map(Object::toString)
-                                .collect(Collectors.joining(", ")));
-            }
         }
         if (async) {
             Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> rawSave(delete, items));
@@ -677,13 +1574,154 @@ public final class DBObjectManager<T> {
         }
     }
 
-    private void save(boolean delete, @NotNull Collection<List<Serializable>> keys) {
-        save(true, delete, keys);
+    private void save(boolean delete, @NotNull DataKey key) {
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            try {
+                if (queue.offer(key, delete)) {
+                    return;
+                }
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        save(true, delete, List.of(key));
+    }
+
+    private void flushWriteBehind(@NotNull Map<DataKey, Boolean> keys) {
+        List<DataKey> toRemove = new ArrayList<>();
+        List<DataKey> toKeep = new ArrayList<>();
+        keys.forEach((key, remove) -> (remove ? toRemove : toKeep).add(key));
+        save(false, true, toRemove);
+        save(false, false, toKeep);
+    }
+
+    /**
+     * Enables the write-behind mode. Calls to save and saveAndRemove only queue the key, and a background thread saves the
+     * queued items in bulk once flushSize keys are waiting or once the oldest one has waited flushIntervalMillis.
+     * Saving a key that is already queued does not queue it again. If capacity keys are waiting, saving a new key blocks
+     * until the queue has room. saveAllSync saves every queued key before doing anything else
+     * @param capacity the maximum amount of keys waiting to be saved. 0 or less disables the write-behind mode, saving the queued keys
+     * @param flushSize the amount of waiting keys that triggers a save
+     * @param flushIntervalMillis the maximum time in milliseconds a key waits before being saved
+     */
+    public void setWriteBehind(int capacity, int flushSize, long flushIntervalMillis) {
+        WriteBehindQueue old = writeBehind;
+        writeBehind = capacity > 0
+                ? new WriteBehindQueue("DBHandler " + tableData.getName() + " write-behind", logger, capacity, flushSize, flushIntervalMillis, this::flushWriteBehind)
+                : null;
+        if (old != null) {
+            old.close();
+        }
+    }
+
+    /**
+     * Enables a Bloom filter of the keys stored in the table. Loads and existence checks of keys the filter knows to be
+     * absent return a default item or false without querying the storage. The filter is built in the background with
+     * a scan of the stored keys, and is not used until the scan finishes. Saved keys are added to the filter, but deleted
+     * ones can not be removed from it, they will just keep being queried.
+     * Only enable it if this manager is the only one writing to the table, items written by anyone else could be
+     * reported as absent
+     * @param expectedKeys the amount of keys the filter is sized for. Storing more keys raises the false positive rate
+     * @param falsePositiveRate the probability of querying the storage for an absent key
+     * @return a future that completes once the filter is in use, or exceptionally if the scan failed
+     */
+    @NotNull
+    public CompletableFuture<Void> enableKeyFilter(long expectedKeys, double falsePositiveRate) {
+        KeyFilter filter = new KeyFilter(expectedKeys, falsePositiveRate);
+        keyFilter = null;
+        buildingKeyFilter = filter;
+        return CompletableFuture.runAsync(() -> {
+            // Saves still in flight may have missed the filter being built, the scan has to start after they land
+            keyFilterLock.writeLock().lock();
+            keyFilterLock.writeLock().unlock();
+            try {
+                driver.forEachId(tableData.getName(), filter::add);
+            }
+            catch (IOException | SQLException ex) {
+                throw new CompletionException(ex);
+            }
+        }, ioExecutor).whenComplete((ignored, ex) -> {
+            if (buildingKeyFilter != filter) {
+                return;
+            }
+            // Publish the filter before stopping recording saves into it, see recordStored
+            if (ex == null) {
+                keyFilter = filter;
+            }
+            buildingKeyFilter = null;
+            if (ex != null) {
+                logger.log(Level.WARNING, "Could not build the key filter of table " + tableData.getName());
+                ex.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Stops using the Bloom filter of the stored keys
+     */
+    public void disableKeyFilter() {
+        buildingKeyFilter = null;
+        keyFilter = null;
+    }
+
+    private boolean isAbsent(@NotNull DataKey key) {
+        KeyFilter filter = keyFilter;
+        return filter != null && !filter.mightContain(key.toId());
     }
 
-    @SafeVarargs
-    private void save(boolean delete, @NotNull List<Serializable>... keys) {
-        save(delete, Arrays.asList(keys));
+    private void recordStored(@NotNull List<T> items) throws ReflectiveOperationException {
+        KeyFilter building = buildingKeyFilter;
+        KeyFilter filter = keyFilter;
+        if (filter == null && building == null) {
+            return;
+        }
+        for (T item : items) {
+            String id = getKey(item).toId();
+            if (filter != null) {
+                filter.add(id);
+            }
+            if (building != null) {
+                building.add(id);
+            }
+        }
+    }
+
+    /**
+     * Returns the amount of keys waiting to be saved by the write-behind mode
+     * @return the depth of the write-behind queue, 0 if it is disabled
+     */
+    public int getWriteBehindQueueSize() {
+        WriteBehindQueue queue = writeBehind;
+        return queue != null ? queue.size() : 0;
+    }
+
+    /**
+     * Returns the largest amount of keys that have been waiting at the same time in the write-behind queue
+     * @return the peak depth of the write-behind queue, 0 if it is disabled
+     */
+    public int getWriteBehindPeakQueueSize() {
+        WriteBehindQueue queue = writeBehind;
+        return queue != null ? queue.peakSize() : 0;
+    }
+
+    /**
+     * Returns how many saves have been merged into a save of the same key that was already queued
+     * @return the amount of coalesced saves, 0 if the write-behind mode is disabled
+     */
+    public long getWriteBehindCoalescedCount() {
+        WriteBehindQueue queue = writeBehind;
+        return queue != null ? queue.coalescedCount() : 0;
+    }
+
+    /**
+     * Returns how many queued keys have been saved by the write-behind mode
+     * @return the amount of flushed keys, 0 if the write-behind mode is disabled
+     */
+    public long getWriteBehindFlushedCount() {
+        WriteBehindQueue queue = writeBehind;
+        return queue != null ? queue.flushedCount() : 0;
     }
 
     /**
@@ -692,7 +1730,7 @@ public final class DBObjectManager<T> {
      * @param keys The rest of the primary key in case it's a composite one (sorted alphabetically by their field names)
      */
     public void save(@NotNull Serializable key, @Nullable Serializable... keys) {
-        save(concatenateArgs(key, keys));
+        this.save(false, DataKey.of(key, keys));
     }
 
     /**
@@ -700,7 +1738,15 @@ public final class DBObjectManager<T> {
      * @param keys The primary key (if there is more than one field set as the primary key, their values have to be sorted alphabetically by their field names)
      */
     public void save(@NotNull List<Serializable> keys) {
-        this.save(false, keys);
+        this.save(false, DataKey.of(keys));
+    }
+
+    /**
+     * Save the data of the object associated with the specified Primary Key
+     * @param key The primary key of the object to save
+     */
+    public void save(@NotNull DataKey key) {
+        this.save(false, key);
     }
 
     /**
@@ -709,8 +1755,7 @@ public final class DBObjectManager<T> {
      * @param keys The rest of the primary key in case it's a composite one (sorted alphabetically by their field names)
      */
     public void saveAndRemove(@NotNull Serializable key, @Nullable Serializable... keys) {
-        List<Serializable> keyList = concatenateArgs(key, keys);
-        this.save(true, keyList);
+        this.save(true, DataKey.of(key, keys));
     }
 
     /**
@@ -718,15 +1763,23 @@ public final class DBObjectManager<T> {
      * @param keys The primary key (if there is more than one field set as the primary key, their values have to be sorted alphabetically by their field names)
      */
     public void saveAndRemove(@NotNull List<Serializable> keys) {
-        this.save(true, keys);
+        this.save(true, DataKey.of(keys));
+    }
+
+    /**
+     * Save the data of the object associated with the specified Primary Key and remove it from memory if the save process was successful
+     * @param key The primary key of the object to save
+     */
+    public void saveAndRemove(@NotNull DataKey key) {
+        this.save(true, key);
     }
 
-    private void saveFromMap(boolean async, @NotNull Map<List<Serializable>, T> dict, boolean remove) {
-        save(async, remove, dict.keySet());
+    private void saveFromCache(boolean async, boolean remove) {
+        save(async, remove, new ArrayList<>(itemData.keySet()));
     }
 
     private void saveAll(boolean async, SaveOperation operation) {
-        if (inactiveTime < 0) {
+        if (inactiveTime == Long.MAX_VALUE) {
             if (operation == SaveOperation.SAVE_AND_REMOVE_INACTIVE)
                 return;
             if (operation == SaveOperation.SAVE_ALL_AND_REMOVE_INACTIVE)
@@ -734,10 +1787,10 @@ public final class DBObjectManager<T> {
         }
         switch (operation) {
             case SAVE_ALL:
-                saveFromMap(async, itemData, false);
+                saveFromCache(async, false);
                 break;
             case SAVE_ALL_AND_REMOVE_ALL:
-                saveFromMap(async, itemData, true);
+                saveFromCache(async, true);
                 break;
             case SAVE_AND_REMOVE_INACTIVE:
                 saveAndRemoveInactive(async, true);
@@ -760,6 +1813,10 @@ public final class DBObjectManager<T> {
      * @param operation a SaveOperation indicating the elements to save and the elements to remove
      */
     public void saveAllSync(SaveOperation operation) {
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            queue.drain();
+        }
         saveAll(false, operation);
     }
 
@@ -767,21 +1824,26 @@ public final class DBObjectManager<T> {
      * Save the data of all the objects currently loaded and remove those that were successfully saved and have not been queried past its max inactive time
      */
     private void saveAndRemoveInactive(boolean async, boolean onlySaveInactive) {
-        long now = System.currentTimeMillis();
-        if (onlySaveInactive) {
-            List<List<Serializable>> toSave = lastChecked.entrySet().stream()
-                    .filter((e) -> now - e.getValue() >= inactiveTime)
-                    .map(Map.Entry::getKey)
-                    .collect(Collectors.toList());
-            save(async, true, toSave);
+        List<EntityCache.Node<DataKey, T>> expired = itemData.expire();
+        Runnable task = () -> {
+            Set<DataKey> inactive = expired.stream()
+                    .map(node -> node.key)
+                    .collect(Collectors.toSet());
+            save(false, true, inactive);
+            // The ones that could not be saved will be checked again once they expire again
+            expired.forEach(itemData::reschedule);
+            if (!onlySaveInactive) {
+                List<DataKey> active = itemData.keySet().stream()
+                        .filter(key -> !inactive.contains(key))
+                        .collect(Collectors.toList());
+                save(false, false, active);
+            }
+        };
+        if (async) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
         }
         else {
-            Map<Boolean, List<List<Serializable>>> partitions =
-                    lastChecked.keySet().stream()
-                            .collect(Collectors.partitioningBy(
-                                    (e) -> now - lastChecked.get(e) >= inactiveTime));
-            save(async, true, partitions.get(true));
-            save(async, false, partitions.get(false));
+            task.run();
         }
     }
 }
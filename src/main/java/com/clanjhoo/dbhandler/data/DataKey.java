@@ -0,0 +1,306 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+/**
+ * An immutable primary key of an object handled by a DBObjectManager. Its hash is computed once, and keys made of a
+ * single UUID or a single long have dedicated compact implementations.
+ * If there is more than one field set as the primary key, their values are sorted alphabetically by their field names
+ */
+public abstract class DataKey {
+    private DataKey() {}
+
+    /**
+     * Returns the key made of a single UUID
+     * @param key the value of the primary key
+     * @return the key
+     */
+    @NotNull
+    public static DataKey of(@NotNull UUID key) {
+        return new UUIDKey(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /**
+     * Returns the key made of a single long
+     * @param key the value of the primary key
+     * @return the key
+     */
+    @NotNull
+    public static DataKey of(long key) {
+        return new LongKey(key);
+    }
+
+    /**
+     * Returns the key made of the given values
+     * @param key The primary key (if there is a composite primary key, this is the first alphabetically by their field names)
+     * @param keys The rest of the primary key in case it's a composite one (sorted alphabetically by their field names)
+     * @return the key
+     */
+    @NotNull
+    public static DataKey of(@NotNull Serializable key, @Nullable Serializable... keys) {
+        if (keys == null || keys.length == 0) {
+            return ofSingle(key);
+        }
+        Serializable[] values = new Serializable[keys.length + 1];
+        values[0] = key;
+        System.arraycopy(keys, 0, values, 1, keys.length);
+        return new CompositeKey(values);
+    }
+
+    /**
+     * Returns the key made of the given values
+     * @param keys The primary key (if there is more than one field set as the primary key, their values have to be sorted alphabetically by their field names)
+     * @return the key
+     */
+    @NotNull
+    public static DataKey of(@NotNull List<Serializable> keys) {
+        if (keys.size() == 1) {
+            return ofSingle(keys.get(0));
+        }
+        return new CompositeKey(keys.toArray(new Serializable[0]));
+    }
+
+    @NotNull
+    static DataKey ofArray(@NotNull Serializable[] keys) {
+        if (keys.length == 1) {
+            return ofSingle(keys[0]);
+        }
+        return new CompositeKey(keys.clone());
+    }
+
+    @NotNull
+    static DataKey ofSingle(@NotNull Serializable key) {
+        if (key instanceof UUID) {
+            return of((UUID) key);
+        }
+        if (key instanceof Long) {
+            return of((long) (Long) key);
+        }
+        return new CompositeKey(new Serializable[]{key});
+    }
+
+    /**
+     * Returns the amount of values composing this key
+     * @return the amount of values
+     */
+    public abstract int size();
+
+    /**
+     * Returns the value at the given position of the key
+     * @param index the position of the value, the values are sorted alphabetically by their field names
+     * @return the value
+     */
+    @NotNull
+    public abstract Serializable get(int index);
+
+    /**
+     * Returns the values composing this key
+     * @return a new array containing the values of the key
+     */
+    @NotNull
+    public Serializable[] toArray() {
+        Serializable[] values = new Serializable[size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = get(i);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the values composing this key
+     * @return an immutable list containing the values of the key
+     */
+    @NotNull
+    public List<Serializable> toList() {
+        return List.of(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * Returns the identifier of this key, made of its values converted to strings and joined with "_"
+     * @return the identifier
+     */
+    @NotNull
+    String toId() {
+        if (size() == 1) {
+            return get(0).toString();
+        }
+        StringJoiner joiner = new StringJoiner("_");
+        for (int i = 0; i < size(); i++) {
+            joiner.add(get(i).toString());
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * A key made of a single UUID, stored as two longs
+     */
+    abstract static class AbstractUUIDKey extends DataKey {
+        abstract long mostSignificantBits();
+
+        abstract long leastSignificantBits();
+
+        @Override
+        public final int size() {
+            return 1;
+        }
+
+        @Override
+        @NotNull
+        public final Serializable get(int index) {
+            if (index != 0) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return new UUID(mostSignificantBits(), leastSignificantBits());
+        }
+
+        @Override
+        public final int hashCode() {
+            long bits = mostSignificantBits() ^ leastSignificantBits();
+            return ((int) (bits >> 32)) ^ (int) bits;
+        }
+
+        @Override
+        public final boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof AbstractUUIDKey)) {
+                return false;
+            }
+            AbstractUUIDKey key = (AbstractUUIDKey) other;
+            return mostSignificantBits() == key.mostSignificantBits() && leastSignificantBits() == key.leastSignificantBits();
+        }
+    }
+
+    private static final class UUIDKey extends AbstractUUIDKey {
+        private final long msb;
+        private final long lsb;
+
+        private UUIDKey(long msb, long lsb) {
+            this.msb = msb;
+            this.lsb = lsb;
+        }
+
+        @Override
+        long mostSignificantBits() {
+            return msb;
+        }
+
+        @Override
+        long leastSignificantBits() {
+            return lsb;
+        }
+    }
+
+    /**
+     * A reusable key used to look up a UUID in a map without allocating a new key. It must never be stored
+     */
+    static final class UUIDProbe extends AbstractUUIDKey {
+        private long msb;
+        private long lsb;
+
+        UUIDProbe set(@NotNull UUID key) {
+            msb = key.getMostSignificantBits();
+            lsb = key.getLeastSignificantBits();
+            return this;
+        }
+
+        @Override
+        long mostSignificantBits() {
+            return msb;
+        }
+
+        @Override
+        long leastSignificantBits() {
+            return lsb;
+        }
+    }
+
+    private static final class LongKey extends DataKey {
+        private final long value;
+
+        private LongKey(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        @NotNull
+        public Serializable get(int index) {
+            if (index != 0) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return value;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return this == other || (other instanceof LongKey && ((LongKey) other).value == value);
+        }
+    }
+
+    private static final class CompositeKey extends DataKey {
+        private final Serializable[] values;
+        private final int hash;
+
+        private CompositeKey(Serializable[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        @NotNull
+        public Serializable get(int index) {
+            return values[index];
+        }
+
+        @Override
+        @NotNull
+        public Serializable[] toArray() {
+            return values.clone();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof CompositeKey)) {
+                return false;
+            }
+            CompositeKey key = (CompositeKey) other;
+            return hash == key.hash && Arrays.equals(values, key.values);
+        }
+    }
+}
@@ -3,30 +3,48 @@ package com.clanjhoo.dbhandler.data;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.io.Serializable;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 interface DatabaseDriver<T> {
     /**
      * @param table name of the table to query
-     * @param ids primary keys of the object to query. Considered sorted in alphabetical order by field name
+     * @param key primary key of the object to query. Its values are sorted in alphabetical order by field name
      * @return whether the specified item exists in this table or not
      * @throws IllegalArgumentException if the specified table name could not be used
      * @throws NoSuchElementException if the specified table does not exist
      */
-    boolean contains(@NotNull String table, @NotNull Serializable[] ids) throws IOException, SQLException;
+    boolean contains(@NotNull String table, @NotNull DataKey key) throws IOException, SQLException;
 
     /**
      * @param table name of the table to query
-     * @param ids primary keys of the object to query. Considered sorted in alphabetical order by field name
+     * @param key primary key of the object to query. Its values are sorted in alphabetical order by field name
      * @return The queried item, null if it doesn't exist
      * @throws IllegalArgumentException if the specified table name or identifier could not be used
      * @throws NoSuchElementException if the specified table or identifier do not exist
      */
-    @NotNull T loadData(@NotNull String table, @NotNull Serializable[] ids) throws IOException, SQLException, ReflectiveOperationException;
+    @NotNull T loadData(@NotNull String table, @NotNull DataKey key) throws IOException, SQLException, ReflectiveOperationException;
+
+    /**
+     * @param table name of the table to query
+     * @param keys primary keys of the objects to query. Their values are sorted in alphabetical order by field name
+     * @return key -> value, where value is the queried item, or a default item with the key set if it doesn't exist
+     * @throws IllegalArgumentException if the specified table name or any identifier could not be used
+     * @throws NoSuchElementException if the specified table does not exist
+     */
+    @NotNull Map<DataKey, T> loadData(@NotNull String table, @NotNull List<DataKey> keys) throws IOException, SQLException, ReflectiveOperationException;
+
+    /**
+     * Reads the primary key of every item stored in a table, without reading the rest of their data
+     * @param table name of the table to scan
+     * @param action receives the identifier of each key
+     * @throws IllegalArgumentException if the specified table name could not be used
+     * @see DataKey#toId()
+     */
+    void forEachId(@NotNull String table, @NotNull Consumer<String> action) throws IOException, SQLException;
 
     /**
      * @param table name of the table to create
@@ -56,7 +74,7 @@ interface DatabaseDriver<T> {
      * @return key -> value, where value is true if the data associated with the key could be saved
      * @throws IllegalArgumentException if the specified table name or identifier could not be used
      */
-    Map<List<Serializable>, Boolean> saveData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException;
+    Map<DataKey, Boolean> saveData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException;
 
     /**
      * @param table name of the table to create
@@ -72,5 +90,10 @@ interface DatabaseDriver<T> {
      * @return key -> value, where value is true if the data associated with the key could be removed
      * @throws IllegalArgumentException if the specified table name or identifier could not be used
      */
-    Map<List<Serializable>, Boolean> deleteData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException;
+    Map<DataKey, Boolean> deleteData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException;
+
+    /**
+     * Releases the files, threads and connections held by this driver. It can not be used afterwards
+     */
+    default void close() {}
 }
@@ -0,0 +1,354 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of the entities handled by a DBObjectManager.
+ * Eviction follows a segmented LRU policy: new entries enter a probation segment and are only promoted to the
+ * protected segment once they have been accessed again, so a burst of one-time loads can not flush the hot entries.
+ * Reads never lock, they only flag the entry as referenced and record the access time read from a CoarseClock.
+ * The segments are reordered lazily when evicting. Entries not accessed for a given time are found through a TimerWheel,
+ * rescheduling the ones that have been accessed since they were scheduled.
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached entities
+ */
+final class EntityCache<K, V> {
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final Map<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final Node<K, V> probation = new Node<>(null, null);
+    private final Node<K, V> protectedSegment = new Node<>(null, null);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final TimerWheel<K, V> timerWheel = new TimerWheel<>(System.currentTimeMillis());
+    private final long expireAfterAccess;
+    private long maximumSize;
+    private long protectedMaximum;
+    private long linkedSize;
+    private long protectedSize;
+
+    static final class Node<K, V> {
+        final K key;
+        final V value;
+        volatile boolean referenced;
+        volatile long accessTime;
+        boolean isProtected;
+        boolean linked;
+        Node<K, V> prev;
+        Node<K, V> next;
+        long deadline;
+        Node<K, V> timerPrev;
+        Node<K, V> timerNext;
+
+        private Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+            this.prev = this;
+            this.next = this;
+        }
+
+        static <K, V> Node<K, V> sentinel() {
+            Node<K, V> sentinel = new Node<>(null, null);
+            sentinel.timerPrev = sentinel;
+            sentinel.timerNext = sentinel;
+            return sentinel;
+        }
+    }
+
+    /**
+     * Creates a new cache
+     * @param maximumSize the maximum amount of entries the cache will hold before evicting. Long.MAX_VALUE means unbounded
+     * @param expireAfterAccess the time in milliseconds after which an entry that has not been accessed is considered expired. Long.MAX_VALUE means never
+     */
+    EntityCache(long maximumSize, long expireAfterAccess) {
+        setMaximumSize(maximumSize);
+        this.expireAfterAccess = expireAfterAccess;
+    }
+
+    /**
+     * Changes the maximum amount of entries. Entries exceeding the new size will be evicted on the next insertion
+     * @param maximumSize the maximum amount of entries the cache will hold before evicting
+     */
+    synchronized void setMaximumSize(long maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("The maximum size must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.protectedMaximum = (long) (maximumSize * PROTECTED_RATIO);
+    }
+
+    synchronized long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the entity associated with the key, recording a hit or a miss
+     * @param key the key of the entity
+     * @return the entity, null if it is not cached
+     */
+    @Nullable
+    V get(@NotNull K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        recordAccess(node);
+        return node.value;
+    }
+
+    /**
+     * Returns the entity associated with the key without affecting the statistics nor the eviction order
+     * @param key the key of the entity
+     * @return the entity, null if it is not cached
+     */
+    @Nullable
+    V peek(@NotNull K key) {
+        Node<K, V> node = data.get(key);
+        return node != null ? node.value : null;
+    }
+
+    boolean containsKey(@NotNull K key) {
+        return data.containsKey(key);
+    }
+
+    private void recordAccess(Node<K, V> node) {
+        if (expireAfterAccess == Long.MAX_VALUE) {
+            return;
+        }
+        long now = CoarseClock.millis();
+        if (node.accessTime != now) {
+            node.accessTime = now;
+        }
+    }
+
+    /**
+     * Stores an entity in the cache. If the cache grows past its maximum size, the entries to evict are unlinked from the
+     * eviction policy and returned. They stay readable until they are removed, so the caller can save them first
+     * @param key the key of the entity
+     * @param value the entity
+     * @return the entries chosen for eviction
+     */
+    @NotNull
+    List<Node<K, V>> put(@NotNull K key, @NotNull V value) {
+        Node<K, V> node = new Node<>(key, value);
+        recordAccess(node);
+        synchronized (this) {
+            Node<K, V> old = data.put(key, node);
+            if (old != null) {
+                unlink(old);
+                timerWheel.deschedule(old);
+            }
+            link(probation, node);
+            if (expireAfterAccess != Long.MAX_VALUE) {
+                node.deadline = node.accessTime + expireAfterAccess;
+                timerWheel.schedule(node);
+            }
+            return evict();
+        }
+    }
+
+    /**
+     * Puts back into the eviction policy an entry whose eviction could not be completed
+     * @param node the entry returned by put
+     */
+    synchronized void readmit(@NotNull Node<K, V> node) {
+        if (!node.linked && data.get(node.key) == node) {
+            link(probation, node);
+        }
+    }
+
+    /**
+     * Removes an entry from the cache
+     * @param key the key of the entity
+     * @return the removed entity, null if it was not cached
+     */
+    @Nullable
+    V remove(@NotNull K key) {
+        synchronized (this) {
+            Node<K, V> node = data.remove(key);
+            if (node == null) {
+                return null;
+            }
+            unlink(node);
+            timerWheel.deschedule(node);
+            return node.value;
+        }
+    }
+
+    /**
+     * Removes an evicted entry from the cache, only if it has not been replaced
+     * @param node the entry returned by put
+     * @return true if the entry has been removed, false otherwise
+     */
+    boolean removeEvicted(@NotNull Node<K, V> node) {
+        synchronized (this) {
+            if (!data.remove(node.key, node)) {
+                return false;
+            }
+            unlink(node);
+            timerWheel.deschedule(node);
+            evictions.increment();
+            return true;
+        }
+    }
+
+    /**
+     * Finds the entries that have not been accessed for the expiration time. They are removed from the timer wheel but
+     * remain in the cache until they are removed, so the caller can save them first
+     * @return the expired entries
+     */
+    @NotNull
+    synchronized List<Node<K, V>> expire() {
+        if (expireAfterAccess == Long.MAX_VALUE) {
+            return Collections.emptyList();
+        }
+        long now = System.currentTimeMillis();
+        List<Node<K, V>> candidates = new ArrayList<>();
+        timerWheel.advance(now, candidates);
+        List<Node<K, V>> expired = new ArrayList<>(candidates.size());
+        for (Node<K, V> node : candidates) {
+            long deadline = node.accessTime + expireAfterAccess;
+            if (deadline > now) {
+                // Accessed after being scheduled
+                node.deadline = deadline;
+                timerWheel.schedule(node);
+            }
+            else {
+                expired.add(node);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Schedules again an entry returned by expire that could not be removed
+     * @param node the expired entry
+     */
+    synchronized void reschedule(@NotNull Node<K, V> node) {
+        if (node.timerNext != null || data.get(node.key) != node) {
+            return;
+        }
+        node.deadline = Math.max(node.accessTime, System.currentTimeMillis()) + expireAfterAccess;
+        timerWheel.schedule(node);
+    }
+
+    synchronized void clear() {
+        for (Node<K, V> node : data.values()) {
+            timerWheel.deschedule(node);
+        }
+        data.clear();
+        probation.prev = probation.next = probation;
+        protectedSegment.prev = protectedSegment.next = protectedSegment;
+        linkedSize = 0;
+        protectedSize = 0;
+    }
+
+    /**
+     * Returns a snapshot of the keys currently cached
+     * @return the keys
+     */
+    @NotNull
+    Set<K> keySet() {
+        return Collections.unmodifiableSet(data.keySet());
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    private List<Node<K, V>> evict() {
+        if (linkedSize <= maximumSize) {
+            return Collections.emptyList();
+        }
+        List<Node<K, V>> victims = new ArrayList<>();
+        while (linkedSize > maximumSize) {
+            Node<K, V> candidate = probation.next;
+            if (candidate == probation) {
+                // Everything is protected, make room in the probation segment
+                demoteProtected();
+                continue;
+            }
+            unlink(candidate);
+            if (candidate.referenced) {
+                // Accessed while on probation, promote it
+                candidate.referenced = false;
+                link(protectedSegment, candidate);
+                while (protectedSize > protectedMaximum) {
+                    demoteProtected();
+                }
+            }
+            else {
+                victims.add(candidate);
+            }
+        }
+        return victims;
+    }
+
+    private void demoteProtected() {
+        Node<K, V> node = protectedSegment.next;
+        for (long i = protectedSize; node.referenced && i > 0; i--) {
+            // Second chance for the protected entries accessed since they were last moved
+            node.referenced = false;
+            unlink(node);
+            link(protectedSegment, node);
+            node = protectedSegment.next;
+        }
+        unlink(node);
+        link(probation, node);
+    }
+
+    private void link(Node<K, V> segment, Node<K, V> node) {
+        node.prev = segment.prev;
+        node.next = segment;
+        segment.prev.next = node;
+        segment.prev = node;
+        node.linked = true;
+        node.isProtected = segment == protectedSegment;
+        linkedSize++;
+        if (node.isProtected) {
+            protectedSize++;
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        if (!node.linked) {
+            return;
+        }
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node;
+        node.next = node;
+        node.linked = false;
+        linkedSize--;
+        if (node.isProtected) {
+            protectedSize--;
+        }
+    }
+}
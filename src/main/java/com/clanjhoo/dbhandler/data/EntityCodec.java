@@ -0,0 +1,189 @@
+package com.clanjhoo.dbhandler.data;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Converts the entities handled by a DBObjectManager from and to JSON objects, compiled once from its fields.
+ * Every field has a writer and a reader chosen from its type, so values are streamed straight between the entity and
+ * the JSON tokens without building an intermediate map or boxing numbers as doubles.
+ * Fields of other types go through a shared Gson instance. The codec holds no mutable state and can be used from any
+ * thread at the same time
+ */
+final class EntityCodec<T> {
+    private static final Gson GSON = new Gson();
+
+    @FunctionalInterface
+    private interface ValueWriter {
+        void write(@NotNull JsonWriter out, @NotNull Object value) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ValueReader {
+        Object read(@NotNull JsonReader in) throws IOException;
+    }
+
+    private final DBObjectManager<T> manager;
+    private final FieldData[] fields;
+    private final ValueWriter[] writers;
+    private final ValueReader[] readers;
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    /**
+     * Compiles the codec of the entities handled by a manager
+     * @param manager the manager handling the entities
+     */
+    EntityCodec(@NotNull DBObjectManager<T> manager) {
+        this.manager = manager;
+        this.fields = manager.getFields();
+        this.writers = new ValueWriter[fields.length];
+        this.readers = new ValueReader[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            writers[i] = writerFor(fields[i]);
+            readers[i] = readerFor(fields[i]);
+            positions.put(fields[i].name, i);
+        }
+    }
+
+    /**
+     * Writes an item as a JSON object. Fields holding null are left out
+     * @param writer the destination of the JSON text. It is not closed
+     * @param item the item to write
+     * @throws IOException if the writer could not be written
+     * @throws ReflectiveOperationException if any field of the item could not be read
+     */
+    void write(@NotNull Writer writer, @NotNull T item) throws IOException, ReflectiveOperationException {
+        JsonWriter out = new JsonWriter(writer);
+        out.setSerializeNulls(false);
+        out.beginObject();
+        for (int i = 0; i < fields.length; i++) {
+            Object value = fields[i].get(item);
+            if (value != null) {
+                out.name(fields[i].name);
+                writers[i].write(out, value);
+            }
+        }
+        out.endObject();
+        out.flush();
+    }
+
+    /**
+     * Reads a JSON object into a new item. Fields missing from the object or holding null get their default value and
+     * unknown members are skipped
+     * @param reader the source of the JSON text. It is not closed
+     * @return the new item
+     * @throws IOException if the reader could not be read or its contents are not a valid JSON object
+     * @throws ReflectiveOperationException if any field of the item could not be written
+     */
+    @NotNull
+    T read(@NotNull Reader reader) throws IOException, ReflectiveOperationException {
+        T item = manager.newInstance();
+        boolean[] seen = new boolean[fields.length];
+        JsonReader in = new JsonReader(reader);
+        in.beginObject();
+        while (in.hasNext()) {
+            Integer position = positions.get(in.nextName());
+            if (position == null || in.peek() == JsonToken.NULL) {
+                in.skipValue();
+                continue;
+            }
+            Object value = readers[position].read(in);
+            fields[position].set(item, value != null ? value : fields[position].defaultValue);
+            seen[position] = true;
+        }
+        in.endObject();
+        for (int i = 0; i < fields.length; i++) {
+            if (!seen[i]) {
+                fields[i].set(item, fields[i].defaultValue);
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Returns a new item holding the default value of every field
+     * @return the new item
+     * @throws ReflectiveOperationException if any field of the item could not be written
+     */
+    @NotNull
+    T empty() throws ReflectiveOperationException {
+        T item = manager.newInstance();
+        for (FieldData field : fields) {
+            field.set(item, field.defaultValue);
+        }
+        return item;
+    }
+
+    private static ValueWriter writerFor(@NotNull FieldData field) {
+        Class<?> type = field.type;
+        if (byte.class.equals(type) || Byte.class.equals(type)
+                || short.class.equals(type) || Short.class.equals(type)
+                || int.class.equals(type) || Integer.class.equals(type)
+                || long.class.equals(type) || Long.class.equals(type)) {
+            return (out, v) -> out.value(((Number) v).longValue());
+        }
+        else if (float.class.equals(type) || Float.class.equals(type)
+                || double.class.equals(type) || Double.class.equals(type)) {
+            return (out, v) -> out.value((Number) v);
+        }
+        else if (boolean.class.equals(type) || Boolean.class.equals(type)) {
+            return (out, v) -> out.value((boolean) (Boolean) v);
+        }
+        else if (char.class.equals(type) || Character.class.equals(type)
+                || String.class.equals(type) || UUID.class.equals(type)) {
+            return (out, v) -> out.value(v.toString());
+        }
+        Type generic = field.field.getGenericType();
+        return (out, v) -> GSON.toJson(v, generic, out);
+    }
+
+    private static ValueReader readerFor(@NotNull FieldData field) {
+        Class<?> type = field.type;
+        if (byte.class.equals(type) || Byte.class.equals(type)) {
+            return in -> (byte) in.nextInt();
+        }
+        else if (short.class.equals(type) || Short.class.equals(type)) {
+            return in -> (short) in.nextInt();
+        }
+        else if (int.class.equals(type) || Integer.class.equals(type)) {
+            return JsonReader::nextInt;
+        }
+        else if (long.class.equals(type) || Long.class.equals(type)) {
+            return JsonReader::nextLong;
+        }
+        else if (float.class.equals(type) || Float.class.equals(type)) {
+            return in -> (float) in.nextDouble();
+        }
+        else if (double.class.equals(type) || Double.class.equals(type)) {
+            return JsonReader::nextDouble;
+        }
+        else if (boolean.class.equals(type) || Boolean.class.equals(type)) {
+            return JsonReader::nextBoolean;
+        }
+        else if (char.class.equals(type) || Character.class.equals(type)) {
+            return in -> {
+                String raw = in.nextString();
+                return !raw.isEmpty() ? raw.charAt(0) : null;
+            };
+        }
+        else if (String.class.equals(type)) {
+            return JsonReader::nextString;
+        }
+        else if (UUID.class.equals(type)) {
+            return in -> UUID.fromString(in.nextString());
+        }
+        Type generic = field.field.getGenericType();
+        return in -> GSON.fromJson(in, generic);
+    }
+}
@@ -1,20 +1,123 @@
 package com.clanjhoo.dbhandler.data;
 
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.util.UUID;
 
 class FieldData {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
     final boolean isPrimary;
     final String name;
     final Object defaultValue;
     final Field field;
     final boolean nullable;
+    final Class<?> type;
+    private final Class<?> boxedType;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
 
-    FieldData(boolean isPrimary, String name, Object defaultValue, Field field, boolean nullable) {
+    /**
+     * Compiles the accessors of a field of an entity. They are method handles, so reading and writing the field skips
+     * the access checks of reflection. They are held by each instance rather than in static final fields, so the JIT
+     * can not treat them as constants and they are not inlined like direct field accesses would be
+     * @param lookup a lookup with private access to the class declaring the field
+     * @throws IllegalAccessException if the lookup has no access to the field
+     */
+    FieldData(boolean isPrimary, String name, Object defaultValue, Field field, boolean nullable, MethodHandles.Lookup lookup) throws IllegalAccessException {
         this.isPrimary = isPrimary;
         this.name = name;
         this.defaultValue = defaultValue;
         this.field = field;
         this.nullable = nullable;
+        this.type = field.getType();
+        this.boxedType = MethodType.methodType(type).wrap().returnType();
+        this.getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+        this.setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+    }
+
+    /**
+     * Returns the value of this field in the given object
+     * @param obj the object containing the data
+     * @return the value of the field, boxed if it is a primitive
+     * @throws ReflectiveOperationException if the field could not be read
+     */
+    Object get(Object obj) throws ReflectiveOperationException {
+        try {
+            return (Object) getter.invokeExact(obj);
+        }
+        catch (RuntimeException | Error ex) {
+            throw ex;
+        }
+        catch (Throwable ex) {
+            throw new ReflectiveOperationException(ex);
+        }
+    }
+
+    /**
+     * Sets the value of this field in the given object, converting it to the type of the field if needed
+     * @param obj the object to modify
+     * @param value the value to assign
+     * @throws ReflectiveOperationException if the field could not be written
+     */
+    void set(Object obj, Object value) throws ReflectiveOperationException {
+        try {
+            setter.invokeExact(obj, coerce(value));
+        }
+        catch (RuntimeException | Error ex) {
+            throw ex;
+        }
+        catch (Throwable ex) {
+            throw new ReflectiveOperationException(ex);
+        }
+    }
+
+    /**
+     * Converts a value to the type of this field, if possible
+     * @param value the value to convert
+     * @return the converted value, or the value itself if it could not be converted
+     */
+    Object coerce(Object value) {
+        if (value == null || boxedType.isInstance(value)) {
+            return value;
+        }
+        if (value instanceof Number) {
+            Number number = (Number) value;
+            if (Byte.class.equals(boxedType)) {
+                return number.byteValue();
+            }
+            else if (Short.class.equals(boxedType)) {
+                return number.shortValue();
+            }
+            else if (Integer.class.equals(boxedType)) {
+                return number.intValue();
+            }
+            else if (Long.class.equals(boxedType)) {
+                return number.longValue();
+            }
+            else if (Float.class.equals(boxedType)) {
+                return number.floatValue();
+            }
+            else if (Double.class.equals(boxedType)) {
+                return number.doubleValue();
+            }
+            else if (Boolean.class.equals(boxedType)) {
+                return number.intValue() != 0;
+            }
+        }
+        else if (value instanceof String) {
+            String str = (String) value;
+            if (UUID.class.equals(boxedType)) {
+                return UUID.fromString(str);
+            }
+            else if (Character.class.equals(boxedType) && !str.isEmpty()) {
+                return str.charAt(0);
+            }
+        }
+        return value;
     }
 }
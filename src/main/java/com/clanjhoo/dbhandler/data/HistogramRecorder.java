@@ -0,0 +1,96 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how many recorded values fall in each of a fixed set of buckets. Buckets grow exponentially, each power of two
+ * being split in 8 linear sub-buckets, so any value from 0 to Long.MAX_VALUE is counted with a relative error below
+ * 12.5% in a fixed amount of memory. Recording never blocks nor allocates, and can be done from any thread
+ */
+final class HistogramRecorder {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a value. Negative values are recorded as 0
+     * @param value the value to record
+     */
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(indexOf(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Records the time elapsed since the given instant
+     * @param startNanos the instant the measured operation started, as returned by System.nanoTime()
+     */
+    void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) - 1);
+    }
+
+    /**
+     * Takes a snapshot of the values recorded so far. Values recorded while the snapshot is being taken may be left out
+     * @return the snapshot
+     */
+    @NotNull
+    ManagerMetrics.Histogram snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        long maxValue = max.get();
+        double mean = count > 0 ? (double) sum.sum() / count : 0;
+        return new ManagerMetrics.Histogram(count, mean, maxValue,
+                percentile(counts, count, maxValue, 0.5),
+                percentile(counts, count, maxValue, 0.9),
+                percentile(counts, count, maxValue, 0.99));
+    }
+
+    private static long percentile(long[] counts, long count, long maxValue, double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+}
@@ -1,100 +1,310 @@
 package com.clanjhoo.dbhandler.data;
 
 import com.clanjhoo.dbhandler.utils.TriFunction;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
-import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 class JSONDriver<T> implements DatabaseDriver<T> {
     // private static final Pattern jsonFile = Pattern.compile("(.*)\\.json");
+    private static final int DEFAULT_FILE_THREADS = 4;
     private static final Pattern filePattern = Pattern.compile("^(?!.{256,})(?!.*\\.\\..*)(?!(aux|clock\\$|con|nul|prn|com[1-9]|lpt[1-9])(?:\\$|\\.))[\\.\\w\\-$()+=\\[\\\\\\];#@~,&'][ \\.\\w\\-$()+=\\[\\\\\\];#@~,&']+[\\w\\-$()+=\\[\\\\\\];#@~,&']$");
 
     private final File storage;
     private final Logger logger;
     private final DBObjectManager<T> manager;
+    private final EntityCodec<T> codec;
+    private final BinaryCodec<T> binaryCodec;
+    private final String extension;
+    private final boolean sharded;
+    private final boolean convertJSON;
+    private final boolean sync;
+    private final ThreadPoolExecutor workers;
 
     /**
-     * Instantiates a new JSON Driver object. Used when StorageType.JSON is selected when instantiating DBObjectManager
+     * Instantiates a new JSON Driver object. Used when StorageType.JSON or StorageType.BINARY are selected when instantiating DBObjectManager
      * @param plugin The plugin that has created the object. This will be passed automatically by DBObjectManager constructor
      * @param manager The DBObjectManager that is using this driver. This will be passed automatically by DBObjectManager constructor
      * @param storageFolderName The name of the folder containing the database, created inside the plugin data folder. Must be passed in the config array of the DBObjectManager constructor
+     * @param options Optional settings of the driver. Can be passed after the folder name in the config array of the DBObjectManager constructor.
+     *                "sharded" (Boolean, default false): store every file inside two levels of folders named after the
+     *                hash of its identifier, like table/3f/a0/id.json, instead of a single folder per table.
+     *                Files stored in the single folder are moved in the background while the driver keeps working.
+     *                "convertJSON" (Boolean, default false): when storing binary rows, convert the JSON files found
+     *                in each table to binary rows when the table is created.
+     *                "sync" (Boolean, default true): sync every written file and its folder to the disk before reporting
+     *                it as saved. Disabling it makes saves faster, but the latest saves can be lost if the server crashes.
+     *                "fileThreads" (Number, default 4): maximum amount of files read at the same time when loading a list
+     *                of items or converting JSON files
+     * @param binary Whether to store every item as a binary row in a .bin file instead of a JSON file
      * @see DBObjectManager#DBObjectManager(Class clazz, JavaPlugin plugin, StorageType type, TriFunction eventFactory, Predicate saveCondition, int inactiveTime, Object... config)
      */
-    JSONDriver(@NotNull JavaPlugin plugin, @NotNull DBObjectManager<T> manager, @NotNull String storageFolderName) {
+    JSONDriver(@NotNull JavaPlugin plugin, @NotNull DBObjectManager<T> manager, @NotNull String storageFolderName, @NotNull Map<String, ?> options, boolean binary) {
         logger = plugin.getLogger();
         storage = new File(plugin.getDataFolder(), storageFolderName);
         if (storage.mkdirs()) {
             logger.log(Level.FINE, "Created local storage folder for raw JSON data");
         }
         this.manager = manager;
+        this.codec = new EntityCodec<>(manager);
+        this.binaryCodec = binary ? new BinaryCodec<>(manager) : null;
+        this.extension = binary ? ".bin" : ".json";
+        this.sharded = Boolean.TRUE.equals(options.get("sharded"));
+        this.convertJSON = binary && Boolean.TRUE.equals(options.get("convertJSON"));
+        this.sync = !Boolean.FALSE.equals(options.get("sync"));
+        Object fileThreads = options.get("fileThreads");
+        if (fileThreads != null && !(fileThreads instanceof Number)) {
+            throw new IllegalArgumentException("The option fileThreads must be a number");
+        }
+        int threads = fileThreads != null ? ((Number) fileThreads).intValue() : DEFAULT_FILE_THREADS;
+        if (threads < 1) {
+            throw new IllegalArgumentException("The amount of file threads must be positive");
+        }
+        AtomicInteger count = new AtomicInteger();
+        // Blocking file I/O gets threads of its own instead of the common pool shared with the rest of the server
+        this.workers = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "DBHandler " + storageFolderName + " file I/O #" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.workers.allowCoreThreadTimeOut(true);
     }
 
-    private static String getId(@NotNull Serializable[] ids) {
-        String[] strIds = new String[ids.length];
-        for (int i = 0; i < ids.length; i++) {
-            strIds[i] = ids[i].toString();
-        }
-        String id = String.join("_", strIds);
+    private static String getId(@NotNull DataKey key) {
+        String id = key.toId();
         if (!filePattern.matcher(id).matches()) {
             throw new IllegalArgumentException("Invalid identifier");
         }
         return id;
     }
 
+    /**
+     * Returns the path of the data file of an item
+     * @param tableFolder the folder of the table
+     * @param id the identifier of the item
+     * @return the path of the file inside its shard if the sharded layout is enabled, or inside the table folder otherwise
+     */
+    private Path getDataPath(@NotNull Path tableFolder, @NotNull String id) {
+        if (!sharded) {
+            return tableFolder.resolve(id + extension);
+        }
+        // 32 bit FNV-1a, stable across runs and Java versions
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < id.length(); i++) {
+            hash = (hash ^ id.charAt(i)) * 0x01000193;
+        }
+        String shard = String.format("%08x", hash);
+        return tableFolder.resolve(shard.substring(0, 2)).resolve(shard.substring(2, 4)).resolve(id + extension);
+    }
+
+    /**
+     * Returns the path a data file had before enabling the sharded layout
+     * @param tableFolder the folder of the table
+     * @param id the identifier of the item
+     * @return the path of the file inside the table folder
+     */
+    private Path getFlatPath(@NotNull Path tableFolder, @NotNull String id) {
+        return tableFolder.resolve(id + extension);
+    }
+
     @Override
-    public boolean contains(@NotNull String table, @NotNull Serializable[] ids) {
+    public boolean contains(@NotNull String table, @NotNull DataKey key) {
         if (!filePattern.matcher(table).matches()) {
             throw new IllegalArgumentException("Invalid table name");
         }
-        String id = getId(ids);
-        File dataFile = new File(storage, table + "/" + id + ".json");
-        return dataFile.exists() && dataFile.isFile();
+        String id = getId(key);
+        Path tableFolder = new File(storage, table).toPath();
+        Path dataFile = getDataPath(tableFolder, id);
+        if (Files.isRegularFile(dataFile)) {
+            return true;
+        }
+        // A file that has not been migrated yet is linked into its shard before leaving the table folder
+        return sharded && (Files.isRegularFile(getFlatPath(tableFolder, id)) || Files.isRegularFile(dataFile));
     }
 
     @Override
-    public @NotNull T loadData(@NotNull String table, @NotNull Serializable[] ids) throws IOException, ReflectiveOperationException {
+    public @NotNull T loadData(@NotNull String table, @NotNull DataKey key) throws IOException, ReflectiveOperationException {
         if (!filePattern.matcher(table).matches()) {
             throw new IllegalArgumentException("Invalid table name");
         }
-        String id = getId(ids);
-        File tableFolder = new File(storage, table);
-        File dataFile = new File(tableFolder,  id + ".json");
+        String id = getId(key);
+        Path tableFolder = new File(storage, table).toPath();
         T dbObject;
-        String[] pKeyNames = manager.getTableData().getPrimaryKeys().toArray(new String[0]);
-        if (pKeyNames.length != ids.length) {
+        FieldData[] pKeyFields = manager.getPrimaryKeyFields();
+        if (pKeyFields.length != key.size()) {
             throw new IllegalArgumentException("You must specify a value for each primary key defined for the object");
         }
-        Arrays.sort(pKeyNames);
-        Map<String, Serializable> data;
-        if (dataFile.exists()) {
-            try (InputStream in = new FileInputStream(dataFile);
-                 Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
-                 BufferedReader br = new BufferedReader(reader)) {
-                Gson gson = new Gson();
-                Type mapType = new TypeToken<Map<String, Object>>(){}.getType();
-                data = gson.fromJson(br, mapType);
+        Path dataFile = getDataPath(tableFolder, id);
+        dbObject = readFile(dataFile);
+        if (dbObject == null && sharded) {
+            dbObject = readFile(getFlatPath(tableFolder, id));
+            if (dbObject == null) {
+                // The file may have been migrated between both reads
+                dbObject = readFile(dataFile);
             }
         }
-        else {
-            data = Collections.emptyMap();
+        if (dbObject == null) {
+            dbObject = codec.empty();
         }
-        dbObject = manager.getInstance(data, false);
-        for (int i = 0; i < ids.length; i++) {
-            manager.setValue(dbObject, pKeyNames[i], ids[i]);
+        for (int i = 0; i < pKeyFields.length; i++) {
+            pKeyFields[i].set(dbObject, key.get(i));
         }
         return dbObject;
     }
 
+    /**
+     * Reads an item from a data file
+     * @param dataFile the path of the file
+     * @return the item, or null if the file does not exist
+     */
+    private T readFile(@NotNull Path dataFile) throws IOException, ReflectiveOperationException {
+        if (binaryCodec != null) {
+            try (InputStream in = Files.newInputStream(dataFile);
+                 DataInputStream din = new DataInputStream(new BufferedInputStream(in))) {
+                return binaryCodec.read(din);
+            }
+            catch (NoSuchFileException ex) {
+                return null;
+            }
+        }
+        try (InputStream in = Files.newInputStream(dataFile);
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+             BufferedReader br = new BufferedReader(reader)) {
+            return codec.read(br);
+        }
+        catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public @NotNull Map<DataKey, T> loadData(@NotNull String table, @NotNull List<DataKey> keys) throws IOException, ReflectiveOperationException {
+        if (!filePattern.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid table name");
+        }
+        // Every key is stored in its own file, so they can be read at the same time
+        List<DataKey> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+        List<Callable<T>> reads = new ArrayList<>(distinct.size());
+        for (DataKey key : distinct) {
+            reads.add(() -> loadData(table, key));
+        }
+        List<T> items = runAll(reads);
+        Map<DataKey, T> results = new HashMap<>();
+        for (int i = 0; i < distinct.size(); i++) {
+            results.put(distinct.get(i), items.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * Runs file operations in the file threads of this driver and waits for all of them
+     * @param tasks the operations to run
+     * @return the result of each operation, in the same order
+     * @throws IOException if any operation failed with it, or if the calling thread was interrupted while waiting
+     * @throws ReflectiveOperationException if any operation failed with it
+     */
+    private <R> List<R> runAll(@NotNull List<Callable<R>> tasks) throws IOException, ReflectiveOperationException {
+        if (tasks.size() == 1) {
+            // Nothing to run at the same time, the calling thread is already an I/O thread
+            try {
+                return Collections.singletonList(tasks.get(0).call());
+            }
+            catch (IOException | ReflectiveOperationException | RuntimeException ex) {
+                throw ex;
+            }
+            catch (Exception ex) {
+                throw new IOException(ex);
+            }
+        }
+        List<Future<R>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<R> task : tasks) {
+                futures.add(workers.submit(task));
+            }
+            List<R> results = new ArrayList<>(tasks.size());
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the file operations");
+        }
+        catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof ReflectiveOperationException) {
+                throw (ReflectiveOperationException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+        finally {
+            // Nothing is left running once one of them failed
+            for (Future<R> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    @Override
+    public void forEachId(@NotNull String table, @NotNull Consumer<String> action) throws IOException {
+        if (!filePattern.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid table name");
+        }
+        Path tableFolder = new File(storage, table).toPath();
+        if (!Files.isDirectory(tableFolder)) {
+            return;
+        }
+        // A file being migrated may be seen twice, which is harmless for the callers
+        try (Stream<Path> files = Files.walk(tableFolder, sharded ? 3 : 1)) {
+            Iterator<Path> it = files.iterator();
+            while (it.hasNext()) {
+                String name = it.next().getFileName().toString();
+                if (name.endsWith(extension)) {
+                    action.accept(name.substring(0, name.length() - extension.length()));
+                }
+            }
+        }
+    }
+
     @Override
     public boolean createTable(TableData table) {
         String name = table.getName();
@@ -102,10 +312,119 @@ class JSONDriver<T> implements DatabaseDriver<T> {
             throw new IllegalArgumentException("Invalid table name");
         }
         File tableFile = new File(storage, name);
-        if (tableFile.exists()) {
-            return true;
+        if (!tableFile.exists() && !tableFile.mkdirs()) {
+            return false;
+        }
+        if (convertJSON) {
+            try {
+                convertFromJSON(name);
+            }
+            catch (IOException | ReflectiveOperationException e) {
+                logger.log(Level.WARNING, "Error while converting the JSON files of table " + name + ", it will continue on the next start");
+                e.printStackTrace();
+                return false;
+            }
+        }
+        if (sharded) {
+            Thread migration = new Thread(() -> migrateToShards(name), "DBHandler " + name + " JSON migration");
+            migration.setDaemon(true);
+            migration.start();
+        }
+        return true;
+    }
+
+    /**
+     * Rewrites every JSON file of a table as a binary row, reading and writing them in parallel. The binary files are
+     * synced before any JSON file is deleted, so an interrupted conversion continues on the next start without losing
+     * data. A JSON file whose binary file already exists was converted before and is just deleted
+     * @param table the name of the table
+     */
+    private void convertFromJSON(@NotNull String table) throws IOException, ReflectiveOperationException {
+        Path tableFolder = new File(storage, table).toPath();
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(tableFolder, 3)) {
+            files = stream.filter(path -> path.getFileName().toString().endsWith(".json")).collect(Collectors.toList());
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        logger.log(Level.INFO, "Converting " + files.size() + " JSON files of table " + table + " to binary rows");
+        Set<Path> folders = ConcurrentHashMap.newKeySet();
+        List<Callable<Void>> conversions = new ArrayList<>(files.size());
+        for (Path json : files) {
+            conversions.add(() -> {
+                String name = json.getFileName().toString();
+                Path dataFile = getDataPath(tableFolder, name.substring(0, name.length() - ".json".length()));
+                if (Files.exists(dataFile)) {
+                    return null;
+                }
+                T item;
+                try (Reader reader = Files.newBufferedReader(json, StandardCharsets.UTF_8)) {
+                    item = codec.read(reader);
+                }
+                // Synced whatever the sync option says, the JSON file is deleted afterwards
+                Path temp = writeTemp(dataFile, item, true);
+                try {
+                    replace(temp, dataFile);
+                }
+                finally {
+                    deleteTemp(temp);
+                }
+                folders.add(dataFile.getParent());
+                return null;
+            });
+        }
+        runAll(conversions);
+        for (Path folder : folders) {
+            syncDirectory(folder);
+        }
+        for (Path json : files) {
+            Files.deleteIfExists(json);
+        }
+        logger.log(Level.INFO, "Converted the JSON files of table " + table);
+    }
+
+    /**
+     * Moves the files stored directly in the table folder into their shards. Each file is linked into its shard and
+     * then removed from the table folder, so it can always be found while it is being moved. A file already present
+     * in the shard was saved after enabling the sharded layout and is newer, so the old one is just removed
+     * @param table the name of the table
+     */
+    private void migrateToShards(@NotNull String table) {
+        Path tableFolder = new File(storage, table).toPath();
+        long moved = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tableFolder, "*" + extension)) {
+            for (Path flat : files) {
+                String name = flat.getFileName().toString();
+                Path target = getDataPath(tableFolder, name.substring(0, name.length() - extension.length()));
+                try {
+                    Files.createDirectories(target.getParent());
+                    try {
+                        Files.createLink(target, flat);
+                    }
+                    catch (UnsupportedOperationException ex) {
+                        // Without hard links the move is not atomic, but it still never replaces a newer file
+                        Files.move(flat, target);
+                    }
+                    moved++;
+                    if (moved % 10000 == 0) {
+                        logger.log(Level.INFO, "Moved " + moved + " files of table " + table + " into shards");
+                    }
+                }
+                catch (FileAlreadyExistsException | NoSuchFileException ex) {
+                    // Saved or deleted after enabling the sharded layout
+                }
+                Files.deleteIfExists(flat);
+            }
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Error while moving the files of table " + table + " into shards, it will continue on the next start");
+            e.printStackTrace();
+            return;
+        }
+        if (moved > 0) {
+            logger.log(Level.INFO, "Moved " + moved + " files of table " + table + " into shards");
         }
-        return tableFile.mkdirs();
     }
 
     @Override
@@ -121,19 +440,7 @@ class JSONDriver<T> implements DatabaseDriver<T> {
     }
 
     private String getPrimaryKeyConcat(@NotNull T item) throws ReflectiveOperationException {
-        String[] primaryKeys = manager.getTableData().getPrimaryKeys().toArray(new String[0]);
-        String[] pKeyVals = new String[primaryKeys.length];
-
-        Arrays.sort(primaryKeys);
-        for (int i = 0; i < primaryKeys.length; i++) {
-            pKeyVals[i] = manager.getValue(item, primaryKeys[i]).toString();
-        }
-
-        String id =  String.join("_", pKeyVals);
-        if (!filePattern.matcher(id).matches()) {
-            throw new IllegalArgumentException("Invalid identifier");
-        }
-        return id;
+        return getId(manager.getKey(item));
     }
 
     @Override
@@ -141,66 +448,251 @@ class JSONDriver<T> implements DatabaseDriver<T> {
         if (!filePattern.matcher(table).matches()) {
             throw new IllegalArgumentException("Invalid table name");
         }
+        Path tableFolder = new File(storage, table).toPath();
         String id = getPrimaryKeyConcat(item);
-        File dataFile = new File(storage, table + "/" + id + ".json");
-        Gson gson = new Gson();
-        String serializedData = gson.toJson(manager.toMap(item));
-        try (OutputStream out = new FileOutputStream(dataFile);
-             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
-             BufferedWriter bw = new BufferedWriter(writer)) {
-            bw.write(serializedData);
-            bw.flush();
+        Path dataFile = getDataPath(tableFolder, id);
+        Path temp = null;
+        try {
+            temp = writeTemp(dataFile, item, sync);
+            replace(temp, dataFile);
+            temp = null;
+            if (sync) {
+                syncDirectory(dataFile.getParent());
+            }
+            if (sharded) {
+                Files.deleteIfExists(getFlatPath(tableFolder, id));
+            }
         } catch (IOException e) {
             logger.log(Level.WARNING, "Raw JSON store data error on table " + table);
             e.printStackTrace();
             return false;
         }
+        finally {
+            deleteTemp(temp);
+        }
         return true;
     }
 
     @Override
-    public Map<List<Serializable>, Boolean> saveData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
-        Map<List<Serializable>, Boolean> results = new HashMap<>();
-        if (items.isEmpty()) {
-            return results;
+    public Map<DataKey, Boolean> saveData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
+        if (!filePattern.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid table name");
         }
-        String[] keyNames = manager.getTableData().getPrimaryKeys().toArray(new String[0]);
-        Arrays.sort(keyNames);
-        Serializable[] keys = new Serializable[keyNames.length];
-        for (T item : items) {
-            for (int i = 0; i < keyNames.length; i++) {
-                keys[i] = manager.getValue(item, keyNames[i]);
+        Path tableFolder = new File(storage, table).toPath();
+        Map<DataKey, Boolean> results = new HashMap<>();
+        // Write every file first, sync them in a single pass, then rename them all and sync each folder once
+        Map<DataKey, Path> temps = new LinkedHashMap<>();
+        Map<DataKey, String> ids = new HashMap<>();
+        Set<Path> folders = new HashSet<>();
+        try {
+            for (T item : items) {
+                DataKey key = manager.getKey(item);
+                String id = getId(key);
+                try {
+                    Path previous = temps.put(key, writeTemp(getDataPath(tableFolder, id), item, false));
+                    deleteTemp(previous);
+                    ids.put(key, id);
+                }
+                catch (IOException e) {
+                    logger.log(Level.WARNING, "Raw JSON store data error on table " + table);
+                    e.printStackTrace();
+                    results.put(key, false);
+                }
+            }
+            if (sync) {
+                for (Iterator<Map.Entry<DataKey, Path>> it = temps.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<DataKey, Path> entry = it.next();
+                    try {
+                        syncFile(entry.getValue());
+                    }
+                    catch (IOException e) {
+                        logger.log(Level.WARNING, "Raw JSON store data error on table " + table);
+                        e.printStackTrace();
+                        deleteTemp(entry.getValue());
+                        it.remove();
+                        results.put(entry.getKey(), false);
+                    }
+                }
+            }
+            for (Iterator<Map.Entry<DataKey, Path>> it = temps.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<DataKey, Path> entry = it.next();
+                try {
+                    Path dataFile = getDataPath(tableFolder, ids.get(entry.getKey()));
+                    replace(entry.getValue(), dataFile);
+                    it.remove();
+                    folders.add(dataFile.getParent());
+                    results.put(entry.getKey(), true);
+                }
+                catch (IOException e) {
+                    logger.log(Level.WARNING, "Raw JSON store data error on table " + table);
+                    e.printStackTrace();
+                    results.put(entry.getKey(), false);
+                }
+            }
+            if (sync) {
+                for (Path folder : folders) {
+                    syncDirectory(folder);
+                }
+            }
+            if (sharded) {
+                for (Map.Entry<DataKey, Boolean> entry : results.entrySet()) {
+                    if (entry.getValue()) {
+                        Files.deleteIfExists(getFlatPath(tableFolder, ids.get(entry.getKey())));
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Error while syncing the folder of table " + table);
+            e.printStackTrace();
+            results.replaceAll((key, saved) -> false);
+        }
+        finally {
+            for (Path temp : temps.values()) {
+                deleteTemp(temp);
             }
-            results.put(Arrays.asList(keys), saveData(table, item));
         }
         return results;
     }
 
+    /**
+     * Writes an item to a new temporary file next to its data file. The file gets the default permissions of new files,
+     * like the data file it replaces.
+     * A renamed file is only durable once its contents are, so every file needs a sync of its own before its rename.
+     * Batches write all their files first and then sync them in a single pass, instead of syncing inside the write loop
+     * @param dataFile the path of the data file of the item
+     * @param item the item to write
+     * @param force whether to sync the file to the disk before returning
+     * @return the path of the temporary file
+     */
+    private Path writeTemp(@NotNull Path dataFile, @NotNull T item, boolean force) throws IOException, ReflectiveOperationException {
+        Path folder = dataFile.getParent();
+        if (sharded) {
+            Files.createDirectories(folder);
+        }
+        String name = dataFile.getFileName().toString();
+        String prefix = name.substring(0, name.length() - extension.length()) + ".";
+        Path temp;
+        FileChannel channel;
+        while (true) {
+            temp = folder.resolve(prefix + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                break;
+            }
+            catch (FileAlreadyExistsException ex) {
+                // Taken by another save of the same item, try another name
+            }
+        }
+        try (FileChannel ch = channel) {
+            if (binaryCodec != null) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)));
+                binaryCodec.write(out, item);
+                out.flush();
+            }
+            else {
+                Writer bw = new BufferedWriter(Channels.newWriter(ch, StandardCharsets.UTF_8));
+                codec.write(bw, item);
+            }
+            if (force) {
+                ch.force(false);
+            }
+        }
+        catch (IOException | ReflectiveOperationException | RuntimeException ex) {
+            deleteTemp(temp);
+            throw ex;
+        }
+        return temp;
+    }
+
+    /**
+     * Syncs the contents of a file to the disk
+     * @param file the file to sync
+     */
+    private static void syncFile(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Atomically replaces a data file with a temporary file, so readers see either the old or the new contents
+     * @param temp the temporary file
+     * @param target the data file
+     */
+    private static void replace(@NotNull Path temp, @NotNull Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Syncs a folder to the disk, making the files renamed into it durable.
+     * Some platforms can not open folders, in that case the renames are left to the file system
+     * @param folder the folder to sync
+     */
+    private static void syncDirectory(@NotNull Path folder) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(folder, StandardOpenOption.READ);
+        }
+        catch (IOException ex) {
+            return;
+        }
+        try (FileChannel ch = channel) {
+            ch.force(true);
+        }
+    }
+
+    private void deleteTemp(Path temp) {
+        if (temp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temp);
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Could not delete the temporary file " + temp);
+            e.printStackTrace();
+        }
+    }
+
     @Override
     public boolean deleteData(@NotNull String table, @NotNull T item) throws ReflectiveOperationException {
         if (!filePattern.matcher(table).matches()) {
             throw new IllegalArgumentException("Invalid table name");
         }
         String id = getPrimaryKeyConcat(item);
-        File dataFile = new File(storage, table + "/" + id + ".json");
-        return !dataFile.exists() || dataFile.delete();
+        Path tableFolder = new File(storage, table).toPath();
+        try {
+            // The old file goes first, so a concurrent migration can not bring the item back
+            if (sharded) {
+                Files.deleteIfExists(getFlatPath(tableFolder, id));
+            }
+            Files.deleteIfExists(getDataPath(tableFolder, id));
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Raw JSON delete data error on table " + table);
+            e.printStackTrace();
+            return false;
+        }
+        return true;
     }
 
     @Override
-    public Map<List<Serializable>, Boolean> deleteData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
-        Map<List<Serializable>, Boolean> results = new HashMap<>();
-        if (items.isEmpty()) {
-            return results;
-        }
-        String[] keyNames = manager.getTableData().getPrimaryKeys().toArray(new String[0]);
-        Arrays.sort(keyNames);
-        Serializable[] keys = new Serializable[keyNames.length];
+    public Map<DataKey, Boolean> deleteData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
+        Map<DataKey, Boolean> results = new HashMap<>();
         for (T item : items) {
-            for (int i = 0; i < keyNames.length; i++) {
-                keys[i] = manager.getValue(item, keyNames[i]);
-            }
-            results.put(Arrays.asList(keys), deleteData(table, item));
+            results.put(manager.getKey(item), deleteData(table, item));
         }
         return results;
     }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
 }
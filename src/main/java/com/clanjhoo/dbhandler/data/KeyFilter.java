@@ -0,0 +1,83 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter of the keys stored in a table. If it says a key is absent, the key is definitely not stored, so the
+ * storage does not need to be queried. Keys can only be added, deleting an item leaves its key as possibly present.
+ * Keys are hashed through their identifier, so keys whose values have different types but the same text match
+ */
+final class KeyFilter {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Creates an empty filter
+     * @param expectedKeys the amount of keys the filter is sized for. Adding more keys raises the false positive rate
+     * @param falsePositiveRate the probability of reporting an absent key as possibly present once expectedKeys keys have been added
+     */
+    KeyFilter(long expectedKeys, double falsePositiveRate) {
+        if (expectedKeys < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("The amount of keys must be positive and the false positive rate between 0 and 1");
+        }
+        long bitsNeeded = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (bitsNeeded + 63) >>> 6);
+        bits = new AtomicLongArray(Math.max(1, words));
+        bitCount = (long) bits.length() << 6;
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedKeys * Math.log(2)));
+    }
+
+    /**
+     * Records a key as present
+     * @param id the identifier of the key
+     * @see DataKey#toId()
+     */
+    void add(@NotNull String id) {
+        long hash = hash(id);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    /**
+     * Checks if a key may be present
+     * @param id the identifier of the key
+     * @return false if the key is definitely absent, true if it may be present
+     * @see DataKey#toId()
+     */
+    boolean mightContain(@NotNull String id) {
+        long hash = hash(id);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(String id) {
+        // 64 bit FNV-1a followed by a final mix, so both halves are usable as independent hashes
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash = (hash ^ id.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
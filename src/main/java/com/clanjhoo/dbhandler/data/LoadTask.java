@@ -0,0 +1,58 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A task that follows a load running in the I/O executor of a manager. It is not scheduled by Bukkit, so it does not
+ * keep any scheduler thread waiting for the load. Cancelling it stops following the load, and cancels the load itself
+ * if it has not finished yet and no other request is waiting for it
+ */
+final class LoadTask implements BukkitTask {
+    private final Plugin owner;
+    private final CompletableFuture<?> future;
+    private final Runnable onCancel;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    LoadTask(@NotNull Plugin owner, @NotNull CompletableFuture<?> future, @NotNull Runnable onCancel) {
+        this.owner = owner;
+        this.future = future;
+        this.onCancel = onCancel;
+    }
+
+    /**
+     * This task is not registered in the Bukkit scheduler, so it does not have an id
+     * @return always -1
+     */
+    @Override
+    public int getTaskId() {
+        return -1;
+    }
+
+    @Override
+    public @NotNull Plugin getOwner() {
+        return owner;
+    }
+
+    @Override
+    public boolean isSync() {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    @Override
+    public void cancel() {
+        // The request is discounted from the load only once, however many times the task is cancelled
+        if (cancelled.compareAndSet(false, true) && future.cancel(false)) {
+            onCancel.run();
+        }
+    }
+}
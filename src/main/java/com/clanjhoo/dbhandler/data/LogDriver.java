@@ -0,0 +1,267 @@
+package com.clanjhoo.dbhandler.data;
+
+import com.clanjhoo.dbhandler.utils.TriFunction;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+class LogDriver<T> implements DatabaseDriver<T> {
+    private static final Pattern tablePattern = Pattern.compile("^[\\w\\-]{1,64}$");
+    private static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+    private static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+    private static final long DEFAULT_COMPACTION_INTERVAL = 60;
+
+    private final File storage;
+    private final Logger logger;
+    private final DBObjectManager<T> manager;
+    private final EntityCodec<T> codec;
+    private final Map<String, LogStore> stores = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService compactor;
+    private final long segmentSize;
+    private final boolean sync;
+    private final double compactionThreshold;
+
+    /**
+     * Instantiates a new log-structured storage driver. Used when StorageType.LOG is selected when instantiating DBObjectManager
+     * @param plugin The plugin that has created the object. This will be passed automatically by DBObjectManager constructor
+     * @param manager The DBObjectManager that is using this driver. This will be passed automatically by DBObjectManager constructor
+     * @param storageFolderName The name of the folder containing the database, created inside the plugin data folder. Must be passed in the config array of the DBObjectManager constructor
+     * @param options Optional settings of the driver. Can be passed after the folder name in the config array of the DBObjectManager constructor.
+     *                "segmentSize" (Number, default 64 MiB): size in bytes after which a new segment file is started.
+     *                "sync" (Boolean, default true): sync every write to the disk before reporting it as saved.
+     *                "compactionThreshold" (Number, default 0.5): fraction of replaced data that makes a segment be compacted.
+     *                "compactionInterval" (Number, default 60): seconds between compaction checks
+     * @see DBObjectManager#DBObjectManager(Class clazz, JavaPlugin plugin, StorageType type, TriFunction eventFactory, Predicate saveCondition, int inactiveTime, Object... config)
+     */
+    LogDriver(@NotNull JavaPlugin plugin, @NotNull DBObjectManager<T> manager, @NotNull String storageFolderName, @NotNull Map<String, ?> options) {
+        logger = plugin.getLogger();
+        storage = new File(plugin.getDataFolder(), storageFolderName);
+        if (storage.mkdirs()) {
+            logger.log(Level.FINE, "Created local storage folder for log-structured data");
+        }
+        this.manager = manager;
+        this.codec = new EntityCodec<>(manager);
+        this.segmentSize = getNumber(options, "segmentSize", DEFAULT_SEGMENT_SIZE).longValue();
+        this.sync = !Boolean.FALSE.equals(options.get("sync"));
+        this.compactionThreshold = getNumber(options, "compactionThreshold", DEFAULT_COMPACTION_THRESHOLD).doubleValue();
+        long interval = getNumber(options, "compactionInterval", DEFAULT_COMPACTION_INTERVAL).longValue();
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DBHandler " + storageFolderName + " compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.compactor.scheduleWithFixedDelay(() -> stores.values().forEach(LogStore::compact), interval, interval, TimeUnit.SECONDS);
+    }
+
+    private static Number getNumber(@NotNull Map<String, ?> options, @NotNull String name, @NotNull Number defaultValue) {
+        Object value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("The option " + name + " must be a number");
+        }
+        return (Number) value;
+    }
+
+    @NotNull
+    private LogStore getStore(@NotNull String table) {
+        if (!tablePattern.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid table name");
+        }
+        LogStore store = stores.get(table);
+        if (store == null) {
+            throw new NoSuchElementException("The table " + table + " does not exist");
+        }
+        return store;
+    }
+
+    private byte[] encode(@NotNull T item) throws ReflectiveOperationException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            codec.write(writer, item);
+        }
+        catch (IOException ex) {
+            // Writing to memory does not fail
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public boolean contains(@NotNull String table, @NotNull DataKey key) {
+        return getStore(table).contains(key.toId());
+    }
+
+    @Override
+    public @NotNull T loadData(@NotNull String table, @NotNull DataKey key) throws IOException, ReflectiveOperationException {
+        FieldData[] pKeyFields = manager.getPrimaryKeyFields();
+        if (pKeyFields.length != key.size()) {
+            throw new IllegalArgumentException("You must specify a value for each primary key defined for the object");
+        }
+        byte[] data = getStore(table).get(key.toId());
+        T dbObject;
+        if (data != null) {
+            try (Reader reader = new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8)) {
+                dbObject = codec.read(reader);
+            }
+        }
+        else {
+            dbObject = codec.empty();
+        }
+        for (int i = 0; i < pKeyFields.length; i++) {
+            pKeyFields[i].set(dbObject, key.get(i));
+        }
+        return dbObject;
+    }
+
+    @Override
+    public @NotNull Map<DataKey, T> loadData(@NotNull String table, @NotNull List<DataKey> keys) throws IOException, ReflectiveOperationException {
+        // Reads are positional and never wait for writers, there is nothing to gain from grouping them
+        Map<DataKey, T> results = new HashMap<>();
+        for (DataKey key : keys) {
+            if (!results.containsKey(key)) {
+                results.put(key, loadData(table, key));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void forEachId(@NotNull String table, @NotNull Consumer<String> action) {
+        getStore(table).forEachKey(action);
+    }
+
+    @Override
+    public boolean createTable(TableData table) {
+        String name = table.getName();
+        if (!tablePattern.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid table name");
+        }
+        try {
+            stores.computeIfAbsent(name, n -> {
+                try {
+                    return new LogStore(new File(storage, n).toPath(), logger, segmentSize, sync, compactionThreshold);
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        }
+        catch (UncheckedIOException e) {
+            logger.log(Level.WARNING, "Error while opening the log of table " + name);
+            e.getCause().printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean dropTable(String table) {
+        if (!tablePattern.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid table name");
+        }
+        LogStore store = stores.remove(table);
+        if (store != null) {
+            store.close();
+        }
+        Path folder = new File(storage, table).toPath();
+        if (!Files.exists(folder)) {
+            return true;
+        }
+        try {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, "*.log")) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(folder);
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Error while dropping table " + table);
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean saveData(@NotNull String table, @NotNull T item) throws ReflectiveOperationException {
+        return saveData(table, Collections.singletonList(item)).values().iterator().next();
+    }
+
+    @Override
+    public Map<DataKey, Boolean> saveData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
+        LogStore store = getStore(table);
+        Map<DataKey, Boolean> results = new HashMap<>();
+        Map<String, byte[]> values = new LinkedHashMap<>();
+        for (T item : items) {
+            DataKey key = manager.getKey(item);
+            values.put(key.toId(), encode(item));
+            results.put(key, false);
+        }
+        // The whole batch is appended with a single write and a single sync
+        try {
+            store.write(values);
+            results.replaceAll((key, saved) -> true);
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Log store data error on table " + table);
+            e.printStackTrace();
+        }
+        return results;
+    }
+
+    @Override
+    public boolean deleteData(@NotNull String table, @NotNull T item) throws ReflectiveOperationException {
+        return deleteData(table, Collections.singletonList(item)).values().iterator().next();
+    }
+
+    @Override
+    public Map<DataKey, Boolean> deleteData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
+        LogStore store = getStore(table);
+        Map<DataKey, Boolean> results = new HashMap<>();
+        Map<String, byte[]> tombstones = new LinkedHashMap<>();
+        for (T item : items) {
+            DataKey key = manager.getKey(item);
+            String id = key.toId();
+            if (store.contains(id)) {
+                tombstones.put(id, null);
+            }
+            results.put(key, false);
+        }
+        try {
+            store.write(tombstones);
+            results.replaceAll((key, deleted) -> true);
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Log store delete data error on table " + table);
+            e.printStackTrace();
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdownNow();
+        for (LogStore store : stores.values()) {
+            store.close();
+        }
+        stores.clear();
+    }
+}
@@ -0,0 +1,545 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only key-value store kept in a folder of segment files. Every write is appended to the newest segment
+ * and an in-memory hash index maps each key to the position of its latest record, so a read is a single positional
+ * read. Removing a key appends a tombstone.
+ * Each record is laid out as: CRC32 (4 bytes), key length (4 bytes), value length (4 bytes, -1 for a tombstone),
+ * key (UTF-8), value. The checksum covers everything after itself. When the store is opened, segments are replayed
+ * from the oldest to the newest to rebuild the index, and a torn record at the end of the newest segment is cut off.
+ * Older segments whose records have mostly been replaced are compacted by copying their live records to the newest
+ * segment and deleting them. Writes are serialized, reads never wait for them
+ */
+final class LogStore {
+    private static final int HEADER = 12;
+    private static final int MAX_KEY_LENGTH = 0xFFFF;
+    private static final int COMPACTION_CHUNK = 1 << 20;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{8})\\.log");
+
+    /**
+     * A segment file. Only the newest one is written, the rest are immutable until they are compacted away
+     */
+    private static final class Segment {
+        final int id;
+        final Path path;
+        // Bytes of the records that are still the latest ones of their keys
+        final AtomicLong liveBytes = new AtomicLong();
+        volatile FileChannel channel;
+        volatile long size;
+        volatile boolean retired;
+
+        Segment(int id, @NotNull Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = channel.size();
+        }
+
+        /**
+         * Opens the file again if its channel was closed by an interrupted thread
+         * @param broken the channel that was found closed
+         * @return false if the segment has been compacted away or the store has been closed, true otherwise
+         */
+        synchronized boolean reopen(@NotNull FileChannel broken) throws IOException {
+            if (retired) {
+                return false;
+            }
+            if (channel == broken) {
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The position of the latest record of a key
+     */
+    private static final class Location {
+        final Segment segment;
+        final long offset;
+        final int length;
+
+        Location(@NotNull Segment segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final Path folder;
+    private final Logger logger;
+    private final long segmentSize;
+    private final boolean sync;
+    private final double compactionThreshold;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Read without the write lock by the compaction, which must never pick the segment being written
+    private volatile Segment active;
+    private volatile boolean closed;
+
+    /**
+     * Opens the store kept in a folder, creating it if needed, and rebuilds its index
+     * @param folder the folder containing the segment files
+     * @param logger the logger used to report recovered corruption and compactions
+     * @param segmentSize the size in bytes after which a new segment is started
+     * @param sync whether every write is synced to the disk before returning
+     * @param compactionThreshold the fraction of replaced bytes that makes a segment eligible for compaction
+     * @throws IOException if the folder or its segments could not be read
+     */
+    LogStore(@NotNull Path folder, @NotNull Logger logger, long segmentSize, boolean sync, double compactionThreshold) throws IOException {
+        if (segmentSize < HEADER || compactionThreshold <= 0 || compactionThreshold > 1) {
+            throw new IllegalArgumentException("The segment size is too small or the compaction threshold is not between 0 and 1");
+        }
+        this.folder = folder;
+        this.logger = logger;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        this.compactionThreshold = compactionThreshold;
+        Files.createDirectories(folder);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, "*.log")) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    int id = Integer.parseInt(matcher.group(1));
+                    segments.put(id, new Segment(id, file));
+                }
+            }
+        }
+        for (Segment segment : segments.values()) {
+            recover(segment, segment.id == segments.lastKey());
+        }
+        active = segments.isEmpty() ? newSegment(0) : segments.lastEntry().getValue();
+    }
+
+    /**
+     * Checks if a key is stored
+     * @param key the key
+     * @return true if the key has a value, false otherwise
+     */
+    boolean contains(@NotNull String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Returns the value of a key
+     * @param key the key
+     * @return the value, or null if the key is not stored
+     * @throws IOException if the record could not be read or its checksum does not match
+     */
+    @Nullable
+    byte[] get(@NotNull String key) throws IOException {
+        while (true) {
+            checkOpen();
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            FileChannel channel = location.segment.channel;
+            try {
+                ByteBuffer record = ByteBuffer.allocate(location.length);
+                readFully(channel, record, location.offset);
+                record.flip();
+                if (!isValid(record)) {
+                    throw new IOException("Corrupted record of key " + key + " in " + location.segment.path);
+                }
+                int keyLength = record.getInt(4);
+                byte[] value = new byte[record.getInt(8)];
+                record.position(HEADER + keyLength);
+                record.get(value);
+                return value;
+            }
+            catch (ClosedByInterruptException ex) {
+                // Retrying would fail again while the thread is interrupted, the channel is left open for the other readers
+                location.segment.reopen(channel);
+                throw interrupted(ex);
+            }
+            catch (ClosedChannelException ex) {
+                // Either the segment was compacted away, so the key has moved, or an interrupt closed its channel
+                if (!location.segment.reopen(channel) && index.get(key) == location) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores or removes several keys with a single write
+     * @param values key -> value, where a null value removes the key
+     * @throws IOException if the records could not be written. In that case none of them is visible
+     */
+    void write(@NotNull Map<String, byte[]> values) throws IOException {
+        if (values.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(values.size());
+        List<byte[]> records = new ArrayList<>(values.size());
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            keys.add(entry.getKey());
+            records.add(encode(entry.getKey(), entry.getValue()));
+        }
+        writeLock.lock();
+        try {
+            checkOpen();
+            append(keys, records, null);
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Passes every stored key to an action
+     * @param action receives each key
+     */
+    void forEachKey(@NotNull Consumer<String> action) {
+        index.keySet().forEach(action);
+    }
+
+    /**
+     * Compacts every old segment with enough replaced records. Segments are compacted one at a time and writers only
+     * wait while each chunk of live records is appended
+     */
+    void compact() {
+        for (Segment segment : segments.values()) {
+            if (closed) {
+                return;
+            }
+            if (segment == active || segment.size == 0
+                    || segment.liveBytes.get() > segment.size * (1 - compactionThreshold)) {
+                continue;
+            }
+            try {
+                compact(segment);
+            }
+            catch (IOException e) {
+                logger.log(Level.WARNING, "Error while compacting " + segment.path);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Syncs the newest segment and closes every segment. The store can not be used afterwards
+     */
+    void close() {
+        writeLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Segment segment : segments.values()) {
+                try {
+                    if (segment == active) {
+                        segment.channel.force(false);
+                    }
+                    // Retiring the segment keeps a reader interrupted meanwhile from opening it again
+                    synchronized (segment) {
+                        segment.retired = true;
+                        segment.channel.close();
+                    }
+                }
+                catch (IOException e) {
+                    logger.log(Level.WARNING, "Error while closing " + segment.path);
+                    e.printStackTrace();
+                }
+            }
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The store at " + folder + " has been closed");
+        }
+    }
+
+    /**
+     * Appends records to the newest segment and points the index at them. Must be called while holding the write lock
+     * @param keys the key of each record
+     * @param records the encoded records
+     * @param expected if not null, each record is only appended if the index still points to this location of its key
+     */
+    private void append(@NotNull List<String> keys, @NotNull List<byte[]> records, @Nullable List<Location> expected) throws IOException {
+        if (active.size >= segmentSize) {
+            if (sync) {
+                active.channel.force(false);
+            }
+            active = newSegment(active.id + 1);
+        }
+        int total = 0;
+        for (int i = 0; i < records.size(); i++) {
+            if (expected == null || index.get(keys.get(i)) == expected.get(i)) {
+                total += records.get(i).length;
+            }
+            else {
+                records.set(i, null);
+            }
+        }
+        if (total == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (byte[] record : records) {
+            if (record != null) {
+                buffer.put(record);
+            }
+        }
+        buffer.flip();
+        Segment segment = active;
+        long start = segment.size;
+        FileChannel channel = segment.channel;
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, start + buffer.position());
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        }
+        catch (ClosedChannelException ex) {
+            segment.reopen(channel);
+            throw ex instanceof ClosedByInterruptException ? interrupted(ex) : ex;
+        }
+        // Nothing is visible until the whole batch is on the file, a failed write is overwritten by the next one
+        segment.size = start + total;
+        long offset = start;
+        for (int i = 0; i < records.size(); i++) {
+            byte[] record = records.get(i);
+            if (record == null) {
+                continue;
+            }
+            Location previous;
+            if (ByteBuffer.wrap(record).getInt(8) < 0) {
+                previous = index.remove(keys.get(i));
+            }
+            else {
+                previous = index.put(keys.get(i), new Location(segment, offset, record.length));
+                segment.liveBytes.addAndGet(record.length);
+            }
+            if (previous != null) {
+                previous.segment.liveBytes.addAndGet(-previous.length);
+            }
+            offset += record.length;
+        }
+    }
+
+    private void compact(@NotNull Segment segment) throws IOException {
+        List<String> keys = new ArrayList<>();
+        List<byte[]> records = new ArrayList<>();
+        List<Location> expected = new ArrayList<>();
+        int pending = 0;
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while (position + HEADER <= segment.size) {
+            header.clear();
+            readFully(segment.channel, header, position);
+            int keyLength = header.getInt(4);
+            int valueLength = header.getInt(8);
+            if (!fits(keyLength, valueLength, position, segment.size)) {
+                // Recovery stopped replaying this segment here, nothing after it is indexed
+                break;
+            }
+            int length = HEADER + keyLength + Math.max(0, valueLength);
+            ByteBuffer record = ByteBuffer.allocate(length);
+            readFully(segment.channel, record, position);
+            record.flip();
+            if (!isValid(record)) {
+                break;
+            }
+            String key = new String(record.array(), HEADER, keyLength, StandardCharsets.UTF_8);
+            Location location = index.get(key);
+            if (valueLength >= 0 ? location != null && location.segment == segment && location.offset == position
+                    : location == null && segments.firstKey() < segment.id) {
+                // A tombstone is kept while an older segment may still hold a value of its key
+                keys.add(key);
+                records.add(record.array());
+                expected.add(location);
+                pending += length;
+            }
+            position += length;
+            if (pending >= COMPACTION_CHUNK) {
+                appendCompacted(keys, records, expected);
+                pending = 0;
+            }
+        }
+        appendCompacted(keys, records, expected);
+        writeLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            // The copies have to be durable before the originals disappear
+            active.channel.force(false);
+            segments.remove(segment.id);
+            synchronized (segment) {
+                segment.retired = true;
+                segment.channel.close();
+            }
+        }
+        finally {
+            writeLock.unlock();
+        }
+        Files.deleteIfExists(segment.path);
+        logger.log(Level.FINE, "Compacted " + segment.path);
+    }
+
+    private void appendCompacted(@NotNull List<String> keys, @NotNull List<byte[]> records, @NotNull List<Location> expected) throws IOException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            checkOpen();
+            append(keys, records, expected);
+        }
+        finally {
+            writeLock.unlock();
+        }
+        keys.clear();
+        records.clear();
+        expected.clear();
+    }
+
+    private Segment newSegment(int id) throws IOException {
+        Segment segment = new Segment(id, folder.resolve(String.format("%08d.log", id)));
+        segments.put(id, segment);
+        if (sync) {
+            // Make the new file itself durable, not only its contents
+            try (FileChannel directory = FileChannel.open(folder, StandardOpenOption.READ)) {
+                directory.force(true);
+            }
+            catch (IOException ignored) {
+                // Some platforms can not open folders
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * Replays the records of a segment into the index
+     * @param segment the segment
+     * @param last whether this is the newest segment, whose torn tail is cut off
+     */
+    private void recover(@NotNull Segment segment, boolean last) throws IOException {
+        long position = 0;
+        long size = segment.size;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while (position + HEADER <= size) {
+            header.clear();
+            readFully(segment.channel, header, position);
+            int keyLength = header.getInt(4);
+            int valueLength = header.getInt(8);
+            if (!fits(keyLength, valueLength, position, size)) {
+                break;
+            }
+            int length = HEADER + keyLength + Math.max(0, valueLength);
+            ByteBuffer record = ByteBuffer.allocate(length);
+            readFully(segment.channel, record, position);
+            record.flip();
+            if (!isValid(record)) {
+                break;
+            }
+            String key = new String(record.array(), HEADER, keyLength, StandardCharsets.UTF_8);
+            Location previous;
+            if (valueLength < 0) {
+                previous = index.remove(key);
+            }
+            else {
+                previous = index.put(key, new Location(segment, position, length));
+                segment.liveBytes.addAndGet(length);
+            }
+            if (previous != null) {
+                previous.segment.liveBytes.addAndGet(-previous.length);
+            }
+            position += length;
+        }
+        if (position < size) {
+            if (last) {
+                logger.log(Level.WARNING, "Cutting off " + (size - position) + " bytes of incomplete or corrupted records at the end of " + segment.path);
+                segment.channel.truncate(position);
+                segment.size = position;
+            }
+            else {
+                logger.log(Level.WARNING, "Ignoring " + (size - position) + " bytes of corrupted records in " + segment.path);
+            }
+        }
+    }
+
+    private static InterruptedIOException interrupted(@NotNull IOException cause) {
+        InterruptedIOException ex = new InterruptedIOException("Interrupted while accessing the store");
+        ex.initCause(cause);
+        return ex;
+    }
+
+    private static boolean fits(int keyLength, int valueLength, long position, long size) {
+        return keyLength > 0 && keyLength <= MAX_KEY_LENGTH && valueLength >= -1
+                && position + HEADER + keyLength + Math.max(0, valueLength) <= size;
+    }
+
+    private static byte[] encode(@NotNull String key, @Nullable byte[] value) {
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        if (rawKey.length == 0 || rawKey.length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Invalid key length");
+        }
+        int valueLength = value != null ? value.length : 0;
+        ByteBuffer record = ByteBuffer.allocate(HEADER + rawKey.length + valueLength);
+        record.putInt(0);
+        record.putInt(rawKey.length);
+        record.putInt(value != null ? value.length : -1);
+        record.put(rawKey);
+        if (value != null) {
+            record.put(value);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.capacity() - 4);
+        record.putInt(0, (int) crc.getValue());
+        return record.array();
+    }
+
+    private static boolean isValid(@NotNull ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.limit() - 4);
+        return record.getInt(0) == (int) crc.getValue();
+    }
+
+    private static void readFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A snapshot of the metrics of a DBObjectManager, taken by {@link DBObjectManager#getMetrics()}. It does not change
+ * once taken, so it can be kept to compare it with a later one. Latencies are measured in nanoseconds around each call
+ * to the storage driver, and batch sizes in items
+ */
+public final class ManagerMetrics {
+    private final String table;
+    private final int cacheSize;
+    private final long cacheHitCount;
+    private final long cacheMissCount;
+    private final long cacheEvictionCount;
+    private final int inFlightLoads;
+    private final long driverErrorCount;
+    private final long poolTimeoutCount;
+    private final Histogram loadLatency;
+    private final Histogram batchLoadLatency;
+    private final Histogram saveLatency;
+    private final Histogram deleteLatency;
+    private final Histogram existsLatency;
+    private final Histogram loadBatchSize;
+    private final Histogram saveBatchSize;
+    private final Histogram poolWait;
+
+    ManagerMetrics(@NotNull String table, int cacheSize, long cacheHitCount, long cacheMissCount, long cacheEvictionCount,
+                   int inFlightLoads, long driverErrorCount, long poolTimeoutCount,
+                   @NotNull Histogram loadLatency, @NotNull Histogram batchLoadLatency, @NotNull Histogram saveLatency,
+                   @NotNull Histogram deleteLatency, @NotNull Histogram existsLatency,
+                   @NotNull Histogram loadBatchSize, @NotNull Histogram saveBatchSize, @NotNull Histogram poolWait) {
+        this.table = table;
+        this.cacheSize = cacheSize;
+        this.cacheHitCount = cacheHitCount;
+        this.cacheMissCount = cacheMissCount;
+        this.cacheEvictionCount = cacheEvictionCount;
+        this.inFlightLoads = inFlightLoads;
+        this.driverErrorCount = driverErrorCount;
+        this.poolTimeoutCount = poolTimeoutCount;
+        this.loadLatency = loadLatency;
+        this.batchLoadLatency = batchLoadLatency;
+        this.saveLatency = saveLatency;
+        this.deleteLatency = deleteLatency;
+        this.existsLatency = existsLatency;
+        this.loadBatchSize = loadBatchSize;
+        this.saveBatchSize = saveBatchSize;
+        this.poolWait = poolWait;
+    }
+
+    /**
+     * Returns the name of the table handled by the manager
+     * @return the name of the table
+     */
+    @NotNull
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Returns the amount of objects kept in memory
+     * @return the amount of objects in memory
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Returns the amount of times tryGetDataNow has found the queried object in memory
+     * @return the amount of cache hits
+     */
+    public long getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    /**
+     * Returns the amount of times tryGetDataNow has not found the queried object in memory
+     * @return the amount of cache misses
+     */
+    public long getCacheMissCount() {
+        return cacheMissCount;
+    }
+
+    /**
+     * Returns the amount of objects removed from memory to keep the amount of objects below the maximum size
+     * @return the amount of evictions
+     */
+    public long getCacheEvictionCount() {
+        return cacheEvictionCount;
+    }
+
+    /**
+     * Returns the amount of loads that had been requested but had not finished yet
+     * @return the amount of loads in flight
+     */
+    public int getInFlightLoads() {
+        return inFlightLoads;
+    }
+
+    /**
+     * Returns the amount of driver calls that failed, plus the amount of items a driver reported as not saved
+     * @return the amount of driver errors
+     */
+    public long getDriverErrorCount() {
+        return driverErrorCount;
+    }
+
+    /**
+     * Returns the amount of times a connection could not be taken from the pool of an SQL driver in time
+     * @return the amount of pool timeouts, always 0 for drivers without a connection pool
+     */
+    public long getPoolTimeoutCount() {
+        return poolTimeoutCount;
+    }
+
+    /**
+     * Returns the latency of loading a single object
+     * @return the latency histogram, in nanoseconds
+     */
+    @NotNull
+    public Histogram getLoadLatency() {
+        return loadLatency;
+    }
+
+    /**
+     * Returns the latency of loading several objects with a single driver call
+     * @return the latency histogram, in nanoseconds
+     */
+    @NotNull
+    public Histogram getBatchLoadLatency() {
+        return batchLoadLatency;
+    }
+
+    /**
+     * Returns the latency of saving a list of objects
+     * @return the latency histogram, in nanoseconds
+     */
+    @NotNull
+    public Histogram getSaveLatency() {
+        return saveLatency;
+    }
+
+    /**
+     * Returns the latency of deleting objects from the storage
+     * @return the latency histogram, in nanoseconds
+     */
+    @NotNull
+    public Histogram getDeleteLatency() {
+        return deleteLatency;
+    }
+
+    /**
+     * Returns the latency of checking whether an object exists in the storage
+     * @return the latency histogram, in nanoseconds
+     */
+    @NotNull
+    public Histogram getExistsLatency() {
+        return existsLatency;
+    }
+
+    /**
+     * Returns the amount of objects queried by each load
+     * @return the batch size histogram, in items
+     */
+    @NotNull
+    public Histogram getLoadBatchSize() {
+        return loadBatchSize;
+    }
+
+    /**
+     * Returns the amount of objects written by each save
+     * @return the batch size histogram, in items
+     */
+    @NotNull
+    public Histogram getSaveBatchSize() {
+        return saveBatchSize;
+    }
+
+    /**
+     * Returns the time the driver waited to take a connection from its pool. Only the SQL drivers have a pool
+     * @return the wait histogram, in nanoseconds
+     */
+    @NotNull
+    public Histogram getPoolWait() {
+        return poolWait;
+    }
+
+    /**
+     * A summary of the values recorded by a histogram. Percentiles are approximate, within 12.5% of the real value
+     */
+    public static final class Histogram {
+        private final long count;
+        private final double mean;
+        private final long max;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+
+        Histogram(long count, double mean, long max, long p50, long p90, long p99) {
+            this.count = count;
+            this.mean = mean;
+            this.max = max;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+        }
+
+        /**
+         * Returns the amount of recorded values
+         * @return the amount of values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the mean of the recorded values
+         * @return the mean, 0 if nothing has been recorded
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * Returns the largest recorded value
+         * @return the maximum, 0 if nothing has been recorded
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the median of the recorded values
+         * @return the 50th percentile
+         */
+        public long getP50() {
+            return p50;
+        }
+
+        /**
+         * Returns the value 90% of the recorded values are below of
+         * @return the 90th percentile
+         */
+        public long getP90() {
+            return p90;
+        }
+
+        /**
+         * Returns the value 99% of the recorded values are below of
+         * @return the 99th percentile
+         */
+        public long getP99() {
+            return p99;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + mean + ", p50=" + p50 + ", p90=" + p90 + ", p99=" + p99 + ", max=" + max;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.clanjhoo.dbhandler.data;
+
+/**
+ * The metrics of a DBObjectManager, exported through JMX with the name
+ * com.clanjhoo.dbhandler:type=DBObjectManager,plugin=&lt;plugin name&gt;,table=&lt;table name&gt;.
+ * Each attribute is read from a new snapshot of the metrics
+ * @see ManagerMetrics
+ */
+public interface ManagerMetricsMXBean {
+    /**
+     * Returns the name of the table handled by the manager
+     * @return the name of the table
+     */
+    String getTable();
+
+    /**
+     * Returns the amount of objects kept in memory
+     * @return the amount of objects in memory
+     */
+    int getCacheSize();
+
+    /**
+     * Returns the amount of times tryGetDataNow has found the queried object in memory
+     * @return the amount of cache hits
+     */
+    long getCacheHitCount();
+
+    /**
+     * Returns the amount of times tryGetDataNow has not found the queried object in memory
+     * @return the amount of cache misses
+     */
+    long getCacheMissCount();
+
+    /**
+     * Returns the amount of objects removed from memory to keep the amount of objects below the maximum size
+     * @return the amount of evictions
+     */
+    long getCacheEvictionCount();
+
+    /**
+     * Returns the amount of loads that had been requested but had not finished yet
+     * @return the amount of loads in flight
+     */
+    int getInFlightLoads();
+
+    /**
+     * Returns the amount of driver calls that failed, plus the amount of items a driver reported as not saved
+     * @return the amount of driver errors
+     */
+    long getDriverErrorCount();
+
+    /**
+     * Returns the amount of times a connection could not be taken from the pool of an SQL driver in time
+     * @return the amount of pool timeouts, always 0 for drivers without a connection pool
+     */
+    long getPoolTimeoutCount();
+
+    /**
+     * Returns the latency of loading a single object
+     * @return the latency histogram, in nanoseconds
+     */
+    ManagerMetrics.Histogram getLoadLatency();
+
+    /**
+     * Returns the latency of loading several objects with a single driver call
+     * @return the latency histogram, in nanoseconds
+     */
+    ManagerMetrics.Histogram getBatchLoadLatency();
+
+    /**
+     * Returns the latency of saving a list of objects
+     * @return the latency histogram, in nanoseconds
+     */
+    ManagerMetrics.Histogram getSaveLatency();
+
+    /**
+     * Returns the latency of deleting objects from the storage
+     * @return the latency histogram, in nanoseconds
+     */
+    ManagerMetrics.Histogram getDeleteLatency();
+
+    /**
+     * Returns the latency of checking whether an object exists in the storage
+     * @return the latency histogram, in nanoseconds
+     */
+    ManagerMetrics.Histogram getExistsLatency();
+
+    /**
+     * Returns the amount of objects queried by each load
+     * @return the batch size histogram, in items
+     */
+    ManagerMetrics.Histogram getLoadBatchSize();
+
+    /**
+     * Returns the amount of objects written by each save
+     * @return the batch size histogram, in items
+     */
+    ManagerMetrics.Histogram getSaveBatchSize();
+
+    /**
+     * Returns the time the driver waited to take a connection from its pool. Only the SQL drivers have a pool
+     * @return the wait histogram, in nanoseconds
+     */
+    ManagerMetrics.Histogram getPoolWait();
+}
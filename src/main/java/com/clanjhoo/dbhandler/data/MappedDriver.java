@@ -0,0 +1,204 @@
+package com.clanjhoo.dbhandler.data;
+
+import com.clanjhoo.dbhandler.utils.TriFunction;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+class MappedDriver<T> implements DatabaseDriver<T> {
+    private static final Pattern tablePattern = Pattern.compile("^[\\w\\-]{1,64}$");
+    private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+    private final File storage;
+    private final Logger logger;
+    private final DBObjectManager<T> manager;
+    private final Map<String, MappedTable<T>> tables = new ConcurrentHashMap<>();
+    private final int initialCapacity;
+    private final boolean sync;
+
+    /**
+     * Instantiates a new memory-mapped storage driver. Used when StorageType.MAPPED is selected when instantiating DBObjectManager
+     * @param plugin The plugin that has created the object. This will be passed automatically by DBObjectManager constructor
+     * @param manager The DBObjectManager that is using this driver. This will be passed automatically by DBObjectManager constructor
+     * @param storageFolderName The name of the folder containing the database, created inside the plugin data folder. Must be passed in the config array of the DBObjectManager constructor
+     * @param options Optional settings of the driver. Can be passed after the folder name in the config array of the DBObjectManager constructor.
+     *                "initialCapacity" (Integer, default 1024): amount of records a new table has room for before growing.
+     *                "sync" (Boolean, default true): sync every change to the disk before reporting it as saved
+     * @throws IllegalArgumentException if any field of the entity is not a primitive, its wrapper or a UUID
+     * @see DBObjectManager#DBObjectManager(Class clazz, JavaPlugin plugin, StorageType type, TriFunction eventFactory, Predicate saveCondition, int inactiveTime, Object... config)
+     */
+    MappedDriver(@NotNull JavaPlugin plugin, @NotNull DBObjectManager<T> manager, @NotNull String storageFolderName, @NotNull Map<String, ?> options) {
+        for (FieldData field : manager.getFields()) {
+            if (MappedTable.widthOf(field.type) < 0) {
+                throw new IllegalArgumentException("The field " + field.name + " of type " + field.type.getName()
+                        + " can not be stored in a fixed width record. Only primitives, their wrappers and UUIDs are allowed");
+            }
+        }
+        logger = plugin.getLogger();
+        storage = new File(plugin.getDataFolder(), storageFolderName);
+        if (storage.mkdirs()) {
+            logger.log(Level.FINE, "Created local storage folder for memory-mapped data");
+        }
+        this.manager = manager;
+        Object capacity = options.get("initialCapacity");
+        this.initialCapacity = capacity instanceof Number ? ((Number) capacity).intValue() : DEFAULT_INITIAL_CAPACITY;
+        this.sync = !Boolean.FALSE.equals(options.get("sync"));
+    }
+
+    @NotNull
+    private MappedTable<T> getTable(@NotNull String table) {
+        if (!tablePattern.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid table name");
+        }
+        MappedTable<T> mapped = tables.get(table);
+        if (mapped == null) {
+            throw new NoSuchElementException("The table " + table + " does not exist");
+        }
+        return mapped;
+    }
+
+    @Override
+    public boolean contains(@NotNull String table, @NotNull DataKey key) {
+        return getTable(table).contains(key);
+    }
+
+    @Override
+    public @NotNull T loadData(@NotNull String table, @NotNull DataKey key) throws ReflectiveOperationException {
+        T dbObject = getTable(table).load(key);
+        if (dbObject == null) {
+            dbObject = manager.newInstance();
+            for (FieldData field : manager.getFields()) {
+                field.set(dbObject, field.defaultValue);
+            }
+            FieldData[] pKeyFields = manager.getPrimaryKeyFields();
+            for (int i = 0; i < pKeyFields.length; i++) {
+                pKeyFields[i].set(dbObject, key.get(i));
+            }
+        }
+        return dbObject;
+    }
+
+    @Override
+    public @NotNull Map<DataKey, T> loadData(@NotNull String table, @NotNull List<DataKey> keys) throws ReflectiveOperationException {
+        Map<DataKey, T> results = new HashMap<>();
+        for (DataKey key : keys) {
+            if (!results.containsKey(key)) {
+                results.put(key, loadData(table, key));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void forEachId(@NotNull String table, @NotNull Consumer<String> action) {
+        getTable(table).forEachKey(key -> action.accept(key.toId()));
+    }
+
+    @Override
+    public boolean createTable(TableData table) {
+        String name = table.getName();
+        if (!tablePattern.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid table name");
+        }
+        try {
+            tables.computeIfAbsent(name, n -> {
+                try {
+                    return new MappedTable<>(storage.toPath(), n, logger, manager, initialCapacity, sync);
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        }
+        catch (UncheckedIOException e) {
+            logger.log(Level.WARNING, "Error while opening the memory-mapped table " + name);
+            e.getCause().printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean dropTable(String table) {
+        if (!tablePattern.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid table name");
+        }
+        MappedTable<T> mapped = tables.remove(table);
+        if (mapped == null) {
+            return true;
+        }
+        try {
+            mapped.drop();
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Error while dropping table " + table);
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean saveData(@NotNull String table, @NotNull T item) throws ReflectiveOperationException {
+        return saveData(table, Collections.singletonList(item)).values().iterator().next();
+    }
+
+    @Override
+    public Map<DataKey, Boolean> saveData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
+        MappedTable<T> mapped = getTable(table);
+        Map<DataKey, Boolean> results = new HashMap<>();
+        for (T item : items) {
+            results.put(manager.getKey(item), false);
+        }
+        try {
+            mapped.save(items);
+            results.replaceAll((key, saved) -> true);
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Memory-mapped store data error on table " + table);
+            e.printStackTrace();
+        }
+        return results;
+    }
+
+    @Override
+    public boolean deleteData(@NotNull String table, @NotNull T item) throws ReflectiveOperationException {
+        return deleteData(table, Collections.singletonList(item)).values().iterator().next();
+    }
+
+    @Override
+    public Map<DataKey, Boolean> deleteData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
+        MappedTable<T> mapped = getTable(table);
+        Map<DataKey, Boolean> results = new HashMap<>();
+        for (T item : items) {
+            results.put(manager.getKey(item), false);
+        }
+        try {
+            mapped.delete(new ArrayList<>(results.keySet()));
+            results.replaceAll((key, deleted) -> true);
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Memory-mapped delete data error on table " + table);
+            e.printStackTrace();
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        for (MappedTable<T> mapped : tables.values()) {
+            mapped.close();
+        }
+        tables.clear();
+    }
+}
@@ -0,0 +1,634 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A table of fixed-width records kept in a memory-mapped file. The file is an open-addressing hash table: each record
+ * lives in the slot given by the hash of its key, or in one of the following slots if that one is taken, so loads and
+ * saves read and write the mapped bytes directly without any parsing.
+ * The file starts with a header of {@value #HEADER} bytes followed by the slots. Each slot holds a status byte, a
+ * bitmap of the fields holding null and the fields in the order of the manager, each with the width of its type.
+ * When the table gets too full it is rehashed into a new generation of the file, which replaces the previous one once
+ * it is complete and synced. Only entities whose fields all have a fixed width can be stored
+ */
+final class MappedTable<T> {
+    private static final int MAGIC = 0x44424D54;
+    private static final int VERSION = 1;
+    private static final int HEADER = 32;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int SCHEMA_OFFSET = 8;
+    private static final int RECORD_SIZE_OFFSET = 12;
+    private static final int CAPACITY_OFFSET = 16;
+    private static final int COUNT_OFFSET = 20;
+    private static final int DELETED_OFFSET = 24;
+    private static final int COMPLETE_OFFSET = 28;
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+    private static final double MAX_LOAD = 0.7;
+
+    @FunctionalInterface
+    private interface ColumnWriter {
+        void write(@NotNull ByteBuffer buffer, int position, @NotNull Object value);
+    }
+
+    @FunctionalInterface
+    private interface ColumnReader {
+        Object read(@NotNull ByteBuffer buffer, int position);
+    }
+
+    /**
+     * A field stored at a fixed position of every record
+     */
+    private static final class Column {
+        final FieldData field;
+        final int index;
+        final int offset;
+        final int width;
+        final ColumnWriter writer;
+        final ColumnReader reader;
+
+        Column(@NotNull FieldData field, int index, int offset) {
+            this.field = field;
+            this.index = index;
+            this.offset = offset;
+            this.width = widthOf(field.type);
+            Class<?> type = field.type;
+            if (byte.class.equals(type) || Byte.class.equals(type)) {
+                writer = (b, p, v) -> b.put(p, ((Number) v).byteValue());
+                reader = ByteBuffer::get;
+            }
+            else if (boolean.class.equals(type) || Boolean.class.equals(type)) {
+                writer = (b, p, v) -> b.put(p, (byte) ((Boolean) v ? 1 : 0));
+                reader = (b, p) -> b.get(p) != 0;
+            }
+            else if (short.class.equals(type) || Short.class.equals(type)) {
+                writer = (b, p, v) -> b.putShort(p, ((Number) v).shortValue());
+                reader = ByteBuffer::getShort;
+            }
+            else if (char.class.equals(type) || Character.class.equals(type)) {
+                writer = (b, p, v) -> b.putChar(p, (Character) v);
+                reader = ByteBuffer::getChar;
+            }
+            else if (int.class.equals(type) || Integer.class.equals(type)) {
+                writer = (b, p, v) -> b.putInt(p, ((Number) v).intValue());
+                reader = ByteBuffer::getInt;
+            }
+            else if (float.class.equals(type) || Float.class.equals(type)) {
+                writer = (b, p, v) -> b.putFloat(p, ((Number) v).floatValue());
+                reader = ByteBuffer::getFloat;
+            }
+            else if (long.class.equals(type) || Long.class.equals(type)) {
+                writer = (b, p, v) -> b.putLong(p, ((Number) v).longValue());
+                reader = ByteBuffer::getLong;
+            }
+            else if (double.class.equals(type) || Double.class.equals(type)) {
+                writer = (b, p, v) -> b.putDouble(p, ((Number) v).doubleValue());
+                reader = ByteBuffer::getDouble;
+            }
+            else if (UUID.class.equals(type)) {
+                writer = (b, p, v) -> {
+                    UUID uuid = (UUID) v;
+                    b.putLong(p, uuid.getMostSignificantBits());
+                    b.putLong(p + 8, uuid.getLeastSignificantBits());
+                };
+                reader = (b, p) -> new UUID(b.getLong(p), b.getLong(p + 8));
+            }
+            else {
+                throw new IllegalArgumentException("The field " + field.name + " of type " + type.getName() + " has no fixed width");
+            }
+        }
+    }
+
+    private final Path folder;
+    private final String name;
+    private final Logger logger;
+    private final DBObjectManager<T> manager;
+    private final boolean sync;
+    private final Column[] columns;
+    private final Column[] keyColumns;
+    private final int keyWidth;
+    private final int bitmapWidth;
+    private final int recordSize;
+    private final int schema;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private Path file;
+    private int generation;
+    private int capacity;
+    private int count;
+    private int deleted;
+
+    /**
+     * Opens the table kept in a folder, creating its file if needed
+     * @param folder the folder containing the table files
+     * @param name the name of the table
+     * @param logger the logger used to report discarded files
+     * @param manager the manager whose entities are stored
+     * @param initialCapacity the amount of slots of a new file
+     * @param sync whether every change is synced to the disk before returning
+     * @throws IOException if the file could not be opened or was created for a different set of fields
+     * @throws IllegalArgumentException if any field of the entity has no fixed width
+     */
+    MappedTable(@NotNull Path folder, @NotNull String name, @NotNull Logger logger, @NotNull DBObjectManager<T> manager, int initialCapacity, boolean sync) throws IOException {
+        this.folder = folder;
+        this.name = name;
+        this.logger = logger;
+        this.manager = manager;
+        this.sync = sync;
+        FieldData[] fields = manager.getFields();
+        this.bitmapWidth = (fields.length + 7) / 8;
+        this.columns = new Column[fields.length];
+        StringBuilder signature = new StringBuilder();
+        int offset = 1 + bitmapWidth;
+        for (int i = 0; i < fields.length; i++) {
+            columns[i] = new Column(fields[i], i, offset);
+            offset += columns[i].width;
+            signature.append(fields[i].name).append(':').append(fields[i].type.getName()).append(';');
+        }
+        this.recordSize = offset;
+        this.schema = signature.toString().hashCode();
+        FieldData[] keyFields = manager.getPrimaryKeyFields();
+        this.keyColumns = new Column[keyFields.length];
+        int width = 0;
+        for (int i = 0; i < keyFields.length; i++) {
+            for (Column column : columns) {
+                if (column.field == keyFields[i]) {
+                    keyColumns[i] = column;
+                }
+            }
+            width += keyColumns[i].width;
+        }
+        this.keyWidth = width;
+
+        Files.createDirectories(folder);
+        open(Math.max(16, Integer.highestOneBit(Math.max(1, initialCapacity - 1)) << 1));
+    }
+
+    /**
+     * Returns the width in bytes of a field type
+     * @param type the type of the field
+     * @return the width, or -1 if values of the type can have different widths
+     */
+    static int widthOf(@NotNull Class<?> type) {
+        if (byte.class.equals(type) || Byte.class.equals(type) || boolean.class.equals(type) || Boolean.class.equals(type)) {
+            return 1;
+        }
+        else if (short.class.equals(type) || Short.class.equals(type) || char.class.equals(type) || Character.class.equals(type)) {
+            return 2;
+        }
+        else if (int.class.equals(type) || Integer.class.equals(type) || float.class.equals(type) || Float.class.equals(type)) {
+            return 4;
+        }
+        else if (long.class.equals(type) || Long.class.equals(type) || double.class.equals(type) || Double.class.equals(type)) {
+            return 8;
+        }
+        else if (UUID.class.equals(type)) {
+            return 16;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a key is stored
+     * @param key the key
+     * @return true if the key is stored, false otherwise
+     */
+    boolean contains(@NotNull DataKey key) {
+        byte[] rawKey = encodeKey(key);
+        lock.readLock().lock();
+        try {
+            return find(rawKey) >= 0;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the item of a key
+     * @param key the key
+     * @return the item, or null if the key is not stored
+     * @throws ReflectiveOperationException if the fields of the new item could not be written
+     */
+    @Nullable
+    T load(@NotNull DataKey key) throws ReflectiveOperationException {
+        byte[] rawKey = encodeKey(key);
+        T item = manager.newInstance();
+        lock.readLock().lock();
+        try {
+            int slot = find(rawKey);
+            if (slot < 0) {
+                return null;
+            }
+            int base = position(slot);
+            for (Column column : columns) {
+                boolean isNull = (buffer.get(base + 1 + column.index / 8) & (1 << (column.index % 8))) != 0;
+                Object value = isNull ? null : column.reader.read(buffer, base + column.offset);
+                column.field.set(item, value != null ? value : column.field.defaultValue);
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        return item;
+    }
+
+    /**
+     * Stores several items, replacing the previous records of their keys
+     * @param items the items to store
+     * @throws IOException if the table could not grow or be synced
+     * @throws ReflectiveOperationException if the fields of any item could not be read
+     */
+    void save(@NotNull List<T> items) throws IOException, ReflectiveOperationException {
+        List<byte[]> keys = new ArrayList<>(items.size());
+        List<Object[]> rows = new ArrayList<>(items.size());
+        for (T item : items) {
+            keys.add(encodeKey(manager.getKey(item)));
+            Object[] row = new Object[columns.length];
+            for (Column column : columns) {
+                row[column.index] = column.field.get(item);
+            }
+            rows.add(row);
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < rows.size(); i++) {
+                if (count + deleted + 1 > capacity * MAX_LOAD) {
+                    rehash(count + 1 > capacity * MAX_LOAD / 2 ? capacity * 2 : capacity);
+                }
+                byte[] rawKey = keys.get(i);
+                int slot = findForInsert(rawKey);
+                int base = position(slot);
+                byte status = buffer.get(base);
+                Object[] row = rows.get(i);
+                for (int b = 0; b < bitmapWidth; b++) {
+                    buffer.put(base + 1 + b, (byte) 0);
+                }
+                for (Column column : columns) {
+                    Object value = row[column.index];
+                    if (value == null) {
+                        int bitmap = base + 1 + column.index / 8;
+                        buffer.put(bitmap, (byte) (buffer.get(bitmap) | (1 << (column.index % 8))));
+                    }
+                    else {
+                        column.writer.write(buffer, base + column.offset, value);
+                    }
+                }
+                // The status goes last, so a record is never seen half written
+                buffer.put(base, USED);
+                if (status != USED) {
+                    count++;
+                    if (status == DELETED) {
+                        deleted--;
+                    }
+                }
+            }
+            commit();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes several keys
+     * @param keys the keys to remove
+     * @throws IOException if the table could not be synced
+     */
+    void delete(@NotNull List<DataKey> keys) throws IOException {
+        List<byte[]> rawKeys = new ArrayList<>(keys.size());
+        for (DataKey key : keys) {
+            rawKeys.add(encodeKey(key));
+        }
+        lock.writeLock().lock();
+        try {
+            for (byte[] rawKey : rawKeys) {
+                int slot = find(rawKey);
+                if (slot >= 0) {
+                    // A tombstone keeps the probe chains of other keys going through this slot
+                    buffer.put(position(slot), DELETED);
+                    count--;
+                    deleted++;
+                }
+            }
+            commit();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Passes the key of every stored record to an action, scanning the slots in order
+     * @param action receives each key
+     */
+    void forEachKey(@NotNull Consumer<DataKey> action) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < capacity; slot++) {
+                int base = position(slot);
+                if (buffer.get(base) == USED) {
+                    Serializable[] values = new Serializable[keyColumns.length];
+                    for (int i = 0; i < keyColumns.length; i++) {
+                        values[i] = (Serializable) keyColumns[i].reader.read(buffer, base + keyColumns[i].offset);
+                    }
+                    action.accept(DataKey.ofArray(values));
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Syncs and closes the file. The table can not be used afterwards
+     */
+    void close() {
+        lock.writeLock().lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            buffer.force();
+            channel.close();
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "Error while closing " + file);
+            e.printStackTrace();
+        }
+        finally {
+            channel = null;
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes every file of the table
+     * @throws IOException if any file could not be deleted
+     */
+    void drop() throws IOException {
+        close();
+        for (Path path : listFiles()) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private void commit() throws IOException {
+        if (channel == null) {
+            throw new IOException("The table " + name + " has been closed");
+        }
+        buffer.putInt(COUNT_OFFSET, count);
+        buffer.putInt(DELETED_OFFSET, deleted);
+        if (sync) {
+            buffer.force();
+        }
+    }
+
+    private int position(int slot) {
+        return HEADER + slot * recordSize;
+    }
+
+    private byte[] encodeKey(@NotNull DataKey key) {
+        if (key.size() != keyColumns.length) {
+            throw new IllegalArgumentException("You must specify a value for each primary key defined for the object");
+        }
+        ByteBuffer raw = ByteBuffer.allocate(keyWidth);
+        int position = 0;
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyColumns[i].writer.write(raw, position, keyColumns[i].field.coerce(key.get(i)));
+            position += keyColumns[i].width;
+        }
+        return raw.array();
+    }
+
+    private static int hash(@NotNull byte[] rawKey) {
+        int hash = 0x811c9dc5;
+        for (byte b : rawKey) {
+            hash = (hash ^ (b & 0xFF)) * 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    private boolean matches(@NotNull ByteBuffer target, int base, @NotNull byte[] rawKey) {
+        int position = 0;
+        for (Column column : keyColumns) {
+            for (int b = 0; b < column.width; b++) {
+                if (target.get(base + column.offset + b) != rawKey[position++]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int find(@NotNull byte[] rawKey) {
+        int mask = capacity - 1;
+        for (int slot = hash(rawKey) & mask, probes = 0; probes < capacity; slot = (slot + 1) & mask, probes++) {
+            int base = position(slot);
+            byte status = buffer.get(base);
+            if (status == EMPTY) {
+                return -1;
+            }
+            if (status == USED && matches(buffer, base, rawKey)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int findForInsert(@NotNull byte[] rawKey) {
+        int existing = find(rawKey);
+        if (existing >= 0) {
+            return existing;
+        }
+        int mask = capacity - 1;
+        int slot = hash(rawKey) & mask;
+        while (buffer.get(position(slot)) == USED) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private List<Path> listFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, name + ".*.dat")) {
+            for (Path path : stream) {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Opens the newest complete generation of the file, creating the first one if there is none
+     * @param initialCapacity the amount of slots of a new file, a power of two
+     */
+    private void open(int initialCapacity) throws IOException {
+        Pattern pattern = Pattern.compile(Pattern.quote(name) + "\\.(\\d+)\\.dat");
+        List<Path> files = listFiles();
+        files.sort((a, b) -> Integer.compare(generationOf(pattern, b), generationOf(pattern, a)));
+        for (Path path : files) {
+            int gen = generationOf(pattern, path);
+            if (gen < 0 || channel != null) {
+                continue;
+            }
+            FileChannel candidate = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (candidate.size() < HEADER) {
+                candidate.close();
+                continue;
+            }
+            MappedByteBuffer mapped = candidate.map(FileChannel.MapMode.READ_WRITE, 0, candidate.size());
+            if (mapped.getInt(MAGIC_OFFSET) != MAGIC || mapped.getInt(COMPLETE_OFFSET) != 1) {
+                candidate.close();
+                continue;
+            }
+            if (mapped.getInt(VERSION_OFFSET) != VERSION || mapped.getInt(SCHEMA_OFFSET) != schema
+                    || mapped.getInt(RECORD_SIZE_OFFSET) != recordSize) {
+                candidate.close();
+                throw new IOException("The file " + path + " was created for different fields of the entity");
+            }
+            channel = candidate;
+            buffer = mapped;
+            file = path;
+            generation = gen;
+            capacity = mapped.getInt(CAPACITY_OFFSET);
+            count = mapped.getInt(COUNT_OFFSET);
+            deleted = mapped.getInt(DELETED_OFFSET);
+        }
+        if (channel == null) {
+            int gen = files.isEmpty() ? 0 : Math.max(0, generationOf(pattern, files.get(0)) + 1);
+            channel = createFile(gen, initialCapacity);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.putInt(COMPLETE_OFFSET, 1);
+            buffer.force();
+            file = folder.resolve(name + "." + gen + ".dat");
+            generation = gen;
+            capacity = initialCapacity;
+            count = 0;
+            deleted = 0;
+        }
+        // Leftovers of rehashes that were interrupted or could not delete the previous generation
+        for (Path path : files) {
+            if (!path.equals(file)) {
+                try {
+                    Files.deleteIfExists(path);
+                    logger.log(Level.FINE, "Deleted the stale table file " + path);
+                }
+                catch (IOException ignored) {
+                    // Still mapped by this process on some platforms, it will be deleted on the next start
+                }
+            }
+        }
+    }
+
+    private static int generationOf(@NotNull Pattern pattern, @NotNull Path path) {
+        Matcher matcher = pattern.matcher(path.getFileName().toString());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Creates an empty generation of the file, not yet marked as complete
+     * @param gen the generation of the new file
+     * @param slots the amount of slots of the new file, a power of two
+     * @return the channel of the new file
+     */
+    private FileChannel createFile(int gen, int slots) throws IOException {
+        long size = HEADER + (long) slots * recordSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The table " + name + " can not grow beyond " + capacity + " records");
+        }
+        Path path = folder.resolve(name + "." + gen + ".dat");
+        FileChannel created = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC_OFFSET, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putInt(SCHEMA_OFFSET, schema);
+        header.putInt(RECORD_SIZE_OFFSET, recordSize);
+        header.putInt(CAPACITY_OFFSET, slots);
+        while (header.hasRemaining()) {
+            created.write(header, header.position());
+        }
+        // Growing the file fills the slots with zeros, which is the empty status
+        created.write(ByteBuffer.allocate(1), size - 1);
+        return created;
+    }
+
+    /**
+     * Copies every stored record into a new generation of the file with the given amount of slots, dropping the
+     * tombstones. Must be called while holding the write lock
+     */
+    private void rehash(int slots) throws IOException {
+        FileChannel created = createFile(generation + 1, slots);
+        MappedByteBuffer target = created.map(FileChannel.MapMode.READ_WRITE, 0, created.size());
+        int mask = slots - 1;
+        byte[] rawKey = new byte[keyWidth];
+        for (int slot = 0; slot < capacity; slot++) {
+            int base = position(slot);
+            if (buffer.get(base) != USED) {
+                continue;
+            }
+            int position = 0;
+            for (Column column : keyColumns) {
+                for (int b = 0; b < column.width; b++) {
+                    rawKey[position++] = buffer.get(base + column.offset + b);
+                }
+            }
+            int newSlot = hash(rawKey) & mask;
+            while (target.get(HEADER + newSlot * recordSize) != EMPTY) {
+                newSlot = (newSlot + 1) & mask;
+            }
+            int newBase = HEADER + newSlot * recordSize;
+            for (int b = 0; b < recordSize; b++) {
+                target.put(newBase + b, buffer.get(base + b));
+            }
+        }
+        target.putInt(COUNT_OFFSET, count);
+        target.putInt(DELETED_OFFSET, 0);
+        target.force();
+        target.putInt(COMPLETE_OFFSET, 1);
+        target.force();
+        FileChannel previous = channel;
+        Path previousFile = file;
+        channel = created;
+        buffer = target;
+        generation++;
+        file = folder.resolve(name + "." + generation + ".dat");
+        capacity = slots;
+        deleted = 0;
+        previous.close();
+        try {
+            Files.deleteIfExists(previousFile);
+        }
+        catch (IOException ignored) {
+            // Still mapped on some platforms, it will be deleted on the next start
+        }
+    }
+}
@@ -9,17 +9,39 @@ import org.jetbrains.annotations.NotNull;
 import java.io.Serializable;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 class MariaDBDriver<T> implements DatabaseDriver<T> {
+    // Maximum amount of keys queried or deleted in a single statement
+    private static final int KEY_CHUNK_SIZE = 500;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
     private final Logger logger;
     private final HikariConfig config;
     private final HikariDataSource dataSource;
     private final String prefix;
     private final DBObjectManager<T> manager;
+    private final int batchSize;
+    private final boolean transactions;
+    private final int isolationLevel;
+    private final boolean binaryUUIDs;
+    private final Map<String, StatementPlan> plans = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    private interface ChunkWriter {
+        /**
+         * Writes the items between the given positions, without committing
+         * @param connection the connection of the transaction
+         * @param from the position of the first item, inclusive
+         * @param to the position of the last item, exclusive
+         */
+        void write(@NotNull Connection connection, int from, int to) throws SQLException, ReflectiveOperationException;
+    }
 
     /**
      * Instantiates a new JSON Driver object. Used when StorageType.MARIADB or StorageType.MYSQL is selected when instantiating DBObjectManager
@@ -31,98 +53,113 @@ class MariaDBDriver<T> implements DatabaseDriver<T> {
      * @param username The user of the database the driver will use. Must be passed in the config array of the DBObjectManager constructor
      * @param password The password of the specified user. Must be passed in the config array of the DBObjectManager constructor
      * @param prefix The prefix to add to the name of all tables. Must be passed in the config array of the DBObjectManager constructor
+     * @param options Optional tuning options, passed as a Map after the prefix in the config array of the DBObjectManager constructor.
+     *                "batchSize" (Integer, default 1000): maximum amount of rows written per batch when saving a list of items.
+     *                "transactions" (Boolean, default false): write each batch of a bulk save or delete in its own transaction.
+     *                A failed batch is rolled back and retried split in halves, down to single items.
+     *                "isolationLevel" (String, default the server one): isolation of those transactions, one of
+     *                READ_UNCOMMITTED, READ_COMMITTED, REPEATABLE_READ or SERIALIZABLE.
+     *                "binaryUUIDs" (Boolean, default false): store UUID fields without a custom sqltype as BINARY(16).
+     *                Existing tables storing them as text are converted in place when the table is created
+     *                "jdbcUrl" (String, default none): JDBC URL to connect to instead of the one built from the host, port
+     *                and database, so any MySQL compatible driver available to the server can be used
      * @see DBObjectManager#DBObjectManager(Class clazz, JavaPlugin plugin, StorageType type, TriFunction eventFactory, Predicate saveCondition, int inactiveTime, Object... config)
      */
-    MariaDBDriver(@NotNull JavaPlugin plugin, @NotNull DBObjectManager<T> manager, @NotNull String host, int port, @NotNull String database, @NotNull String username, @NotNull String password, @NotNull String prefix) {
+    MariaDBDriver(@NotNull JavaPlugin plugin, @NotNull DBObjectManager<T> manager, @NotNull String host, int port, @NotNull String database, @NotNull String username, @NotNull String password, @NotNull String prefix, @NotNull Map<String, ?> options) {
         this.logger = plugin.getLogger();
         this.prefix = prefix;
+        this.batchSize = getOption(options, "batchSize", DEFAULT_BATCH_SIZE);
+        this.transactions = Boolean.TRUE.equals(options.get("transactions"));
+        this.isolationLevel = getIsolationLevel(options.get("isolationLevel"));
+        this.binaryUUIDs = Boolean.TRUE.equals(options.get("binaryUUIDs"));
         this.manager = manager;
         this.config = new HikariConfig();
-        this.config.setJdbcUrl("jdbc:mysql://" + host + ":" + port + "/" + database);
+        Object jdbcUrl = options.get("jdbcUrl");
+        this.config.setJdbcUrl(jdbcUrl != null ? jdbcUrl.toString() : "jdbc:mysql://" + host + ":" + port + "/" + database);
         this.config.setUsername(username);
         this.config.setPassword(password);
         this.config.addDataSourceProperty("cachePrepStmts", "true");
         this.config.addDataSourceProperty("prepStmtCacheSize", "250");
         this.config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        // Send each batch as multi-row statements instead of one round trip per row
+        this.config.addDataSourceProperty("rewriteBatchedStatements", "true");
+        this.config.setMetricsTrackerFactory(manager.getMetricsRecorder().poolTracker());
         this.dataSource = new HikariDataSource(config);
     }
 
-    // DO NOT CALL DIRECTLY
-    private Object prepareStatement(@NotNull Connection conn, Function<PreparedStatement, Object> function, final String query, Object... vars) {
-        try (PreparedStatement ps = conn.prepareStatement(query)) {
-            for (int i = 0; i < vars.length; i++) {
-                if (vars[i] instanceof UUID) {
-                    vars[i] = vars[i].toString();
-                }
-                if (vars[i] instanceof String) {
-                    ps.setString(i + 1, (String) vars[i]);
-                }
-                if (vars[i] instanceof Byte) {
-                    ps.setByte(i + 1, (byte) vars[i]);
-                }
-                else if (vars[i] instanceof Short) {
-                    ps.setShort(i + 1, (short) vars[i]);
-                }
-                else if (vars[i] instanceof Integer) {
-                    ps.setInt(i + 1, (int) vars[i]);
-                }
-                else if (vars[i] instanceof Long) {
-                    ps.setLong(i + 1, (long) vars[i]);
-                }
-                else if (vars[i] instanceof Float) {
-                    ps.setFloat(i + 1, (float) vars[i]);
-                }
-                else if (vars[i] instanceof Double) {
-                    ps.setDouble(i + 1, (double) vars[i]);
-                }
-                else{
-                    ps.setObject(i + 1, vars[i]);
-                }
-            }
-
-            return function.apply(ps);
-        } catch (SQLException e) {
-            logger.log(Level.WARNING, "MySQL error");
-            e.printStackTrace();
+    private static int getOption(@NotNull Map<String, ?> options, @NotNull String name, int defaultValue) {
+        Object value = options.get(name);
+        if (value == null) {
+            return defaultValue;
         }
-
-        return null;
+        if (!(value instanceof Integer) || (int) value < 1) {
+            throw new IllegalArgumentException("The option " + name + " must be a positive Integer");
+        }
+        return (int) value;
     }
 
-    private int update(@NotNull Connection connection, final String query, final Object... vars) throws SQLException {
-        Object result = prepareStatement(connection, (ps) -> {
-            try {
-                return ps.executeUpdate();
-            } catch (SQLException ex) {
-                if (ex.getErrorCode() == 1060) {
-                    return -1;
-                }
-                return ex;
-            }
-        }, query, vars);
-        if (result instanceof SQLException) {
-            throw (SQLException) result;
+    private static int getIsolationLevel(Object value) {
+        if (value == null) {
+            return -1;
+        }
+        switch (value.toString().toUpperCase(Locale.ROOT)) {
+            case "READ_UNCOMMITTED":
+                return Connection.TRANSACTION_READ_UNCOMMITTED;
+            case "READ_COMMITTED":
+                return Connection.TRANSACTION_READ_COMMITTED;
+            case "REPEATABLE_READ":
+                return Connection.TRANSACTION_REPEATABLE_READ;
+            case "SERIALIZABLE":
+                return Connection.TRANSACTION_SERIALIZABLE;
+            default:
+                throw new IllegalArgumentException("Unknown isolation level " + value);
         }
-        return (int) result;
     }
 
-    private int update(final String query, final Object... vars) throws SQLException {
-        Connection connection = dataSource.getConnection();
-        if (connection == null) {
-            logger.log(Level.WARNING, "Could not get the connection!");
-            return -1;
+    private static void bind(@NotNull PreparedStatement ps, int index, Object value) throws SQLException {
+        if (value instanceof UUID) {
+            value = value.toString();
+        }
+        if (value instanceof String) {
+            ps.setString(index, (String) value);
+        }
+        else if (value instanceof Byte) {
+            ps.setByte(index, (byte) value);
         }
+        else if (value instanceof Short) {
+            ps.setShort(index, (short) value);
+        }
+        else if (value instanceof Integer) {
+            ps.setInt(index, (int) value);
+        }
+        else if (value instanceof Long) {
+            ps.setLong(index, (long) value);
+        }
+        else if (value instanceof Float) {
+            ps.setFloat(index, (float) value);
+        }
+        else if (value instanceof Double) {
+            ps.setDouble(index, (double) value);
+        }
+        else{
+            ps.setObject(index, value);
+        }
+    }
 
-        int result = update(connection, query, vars);
+    // DO NOT CALL DIRECTLY
+    private Object prepareStatement(@NotNull Connection conn, Function<PreparedStatement, Object> function, final String query, Object... vars) {
+        try (PreparedStatement ps = conn.prepareStatement(query)) {
+            for (int i = 0; i < vars.length; i++) {
+                bind(ps, i + 1, vars[i]);
+            }
 
-        try {
-            connection.close();
+            return function.apply(ps);
         } catch (SQLException e) {
-            logger.log(Level.WARNING, "Error closing connection");
+            logger.log(Level.WARNING, "MySQL error");
             e.printStackTrace();
         }
 
-        return result;
+        return null;
     }
 
     private boolean execute(@NotNull Connection connection, final String query, final Object... vars) throws SQLException {
@@ -140,7 +177,7 @@ class MariaDBDriver<T> implements DatabaseDriver<T> {
         if (result instanceof SQLException) {
             throw (SQLException) result;
         }
-        return (boolean) result;
+        return Boolean.TRUE.equals(result);
     }
 
     private boolean execute(final String query, final Object... vars) throws SQLException {
@@ -162,148 +199,180 @@ class MariaDBDriver<T> implements DatabaseDriver<T> {
         return result;
     }
 
-    private <E> E query(@NotNull Connection connection, final String query, Function<ResultSet, E> function, final Object... vars) throws SQLException {
-        Object result = prepareStatement(connection, (ps) -> {
+    private StatementPlan getPlan(@NotNull String table) {
+        return plans.computeIfAbsent(table, name -> new StatementPlan(prefix + name, manager.getFields(), manager.getPrimaryKeyFields(), binaryUUIDs, SQLDialect.MYSQL));
+    }
+
+    @Override
+    public boolean contains(@NotNull String table, @NotNull DataKey key) throws SQLException {
+        StatementPlan plan = getPlan(table);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(plan.existsSql)) {
+            plan.bindKey(ps, 1, key);
             try (ResultSet rs = ps.executeQuery()) {
-                return function.apply(rs);
-            } catch (SQLException ex) {
-                return ex;
+                return rs.next();
             }
-        }, query, vars);
-        if (result instanceof SQLException) {
-            throw (SQLException) result;
         }
-        return (E) result;
     }
 
-    private <E> E query(final String query, Function<ResultSet, E> function, final Object... vars) throws SQLException {
-        Connection connection = dataSource.getConnection();
-        if (connection == null) {
-            logger.log(Level.WARNING, "Could not get the connection!");
-            return null;
+    private T getDefault(@NotNull DataKey key) throws ReflectiveOperationException {
+        T dbObject = manager.getInstance(Collections.emptyMap(), false);
+        FieldData[] keyColumns = manager.getPrimaryKeyFields();
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyColumns[i].set(dbObject, key.get(i));
         }
+        return dbObject;
+    }
 
-        E result = query(connection, query, function, vars);
-
-        try {
-            connection.close();
-        } catch (SQLException e) {
-            logger.log(Level.WARNING, "Error closing connection");
-            e.printStackTrace();
+    @Override
+    public @NotNull T loadData(@NotNull String table, @NotNull DataKey key) throws SQLException, ReflectiveOperationException {
+        StatementPlan plan = getPlan(table);
+        if (key.size() != plan.keyColumns.length) {
+            throw new IllegalArgumentException("You must specify a value for each primary key defined for the object");
+        }
+        T dbObject = null;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(plan.selectSql)) {
+            plan.bindKey(ps, 1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    dbObject = manager.newInstance();
+                    plan.readRow(rs, dbObject);
+                }
+            }
+        }
+        if (dbObject == null) {
+            return getDefault(key);
         }
 
-        return result;
+        for (int i = 0; i < plan.keyColumns.length; i++) {
+            plan.keyColumns[i].set(dbObject, key.get(i));
+        }
+        return dbObject;
     }
 
-    private String getSQLConditionKey() {
-        String[] pKeyNames = manager.getTableData().getPrimaryKeys().toArray(new String[0]);
-        String[] pKeyConds = new String[pKeyNames.length];
-        for (int i = 0; i < pKeyNames.length; i++) {
-            Class<?> clazz = manager.getType(pKeyNames[i]);
-            String compOp = "=";
-            if (UUID.class.isAssignableFrom(clazz) || String.class.isAssignableFrom(clazz)) {
-                compOp = "LIKE";
+    @Override
+    public @NotNull Map<DataKey, T> loadData(@NotNull String table, @NotNull List<DataKey> keys) throws SQLException, ReflectiveOperationException {
+        Map<DataKey, T> results = new HashMap<>();
+        if (keys.isEmpty()) {
+            return results;
+        }
+        StatementPlan plan = getPlan(table);
+        // Rows come back with the types of the fields, so match them against keys converted to those types. The IN query
+        // compares String keys with the collation of the table, ignoring case and trailing spaces, so both sides are
+        // folded the same way. Every requested key then gets its own item, with the key it was requested with
+        Map<DataKey, List<DataKey>> requested = new HashMap<>();
+        List<DataKey> pending = new ArrayList<>();
+        for (DataKey key : keys) {
+            DataKey normalized = manager.normalizeKey(key);
+            requested.computeIfAbsent(foldKey(normalized), folded -> {
+                pending.add(normalized);
+                return new ArrayList<>();
+            }).add(key);
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            for (int start = 0; start < pending.size(); start += KEY_CHUNK_SIZE) {
+                List<DataKey> chunk = pending.subList(start, Math.min(start + KEY_CHUNK_SIZE, pending.size()));
+                try (PreparedStatement ps = connection.prepareStatement(plan.selectInSql(chunk.size()))) {
+                    int index = 1;
+                    for (DataKey key : chunk) {
+                        index = plan.bindKey(ps, index, key);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            T row = manager.newInstance();
+                            plan.readRow(rs, row);
+                            List<DataKey> matches = requested.get(foldKey(manager.getKey(row)));
+                            if (matches == null) {
+                                continue;
+                            }
+                            boolean first = true;
+                            for (DataKey key : matches) {
+                                if (results.containsKey(key)) {
+                                    continue;
+                                }
+                                T dbObject = row;
+                                if (!first) {
+                                    // Keys differing only in case share the row, but not the item
+                                    dbObject = manager.newInstance();
+                                    plan.readRow(rs, dbObject);
+                                }
+                                first = false;
+                                DataKey normalized = manager.normalizeKey(key);
+                                for (int i = 0; i < plan.keyColumns.length; i++) {
+                                    plan.keyColumns[i].set(dbObject, normalized.get(i));
+                                }
+                                results.put(key, dbObject);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        for (DataKey key : keys) {
+            if (!results.containsKey(key)) {
+                results.put(key, getDefault(key));
             }
-            pKeyConds[i] = "`" + pKeyNames[i] + "` " + compOp + " ?";
         }
-        return String.join(" AND ", pKeyConds);
+        return results;
     }
 
-    @Override
-    public boolean contains(@NotNull String table, @NotNull Serializable[] ids) throws SQLException {
-        String condKey = getSQLConditionKey();
-        String sqlQuery = "SELECT COUNT(*) FROM (SELECT * FROM `" + prefix + table + "` WHERE " + condKey + " LIMIT 1) s;";
-        // logger.log(Level.INFO, "Exists?");
-        return Boolean.TRUE.equals(query(sqlQuery, (rs) -> {
-            boolean res = false;
-            try {
-                if (rs != null && rs.next()) {
-                    res = rs.getInt(1) == 1;
+    /**
+     * Folds the String values of a key the way the ascii_general_ci collation of the tables compares them
+     * @param key the key to fold
+     * @return a key whose Strings are lower case and have no trailing spaces
+     */
+    @NotNull
+    private static DataKey foldKey(@NotNull DataKey key) {
+        Serializable[] values = null;
+        for (int i = 0; i < key.size(); i++) {
+            if (key.get(i) instanceof String) {
+                String value = (String) key.get(i);
+                int end = value.length();
+                while (end > 0 && value.charAt(end - 1) == ' ') {
+                    end--;
                 }
-            } catch (SQLException e) {
-                logger.log(Level.WARNING, "MySQL error checking existence in " + prefix + table);
-                e.printStackTrace();
+                if (values == null) {
+                    values = key.toArray();
+                }
+                values[i] = value.substring(0, end).toLowerCase(Locale.ROOT);
             }
-            return res;
-        }, (Object[]) ids));
+        }
+        return values != null ? DataKey.ofArray(values) : key;
     }
 
     @Override
-    public @NotNull T loadData(@NotNull String table, @NotNull Serializable[] ids) throws SQLException, ReflectiveOperationException {
-        String[] pKeyNames = manager.getTableData().getPrimaryKeys().toArray(new String[0]);
-        if (ids.length != pKeyNames.length) {
-            throw new IllegalArgumentException("You must specify a value for each primary key defined for the object");
-        }
-        Arrays.sort(pKeyNames);
-        String condKey = getSQLConditionKey();
-        SQLException[] exception = new SQLException[]{null};
-        String sqlQuery = "SELECT * FROM `" + prefix + table + "` WHERE " + condKey + " LIMIT 1;";
-        // logger.log(Level.INFO, "Load Query");
-        Map<String, Serializable> data = new HashMap<>();
-        query(sqlQuery, (rs) -> {
-            try {
-                if (rs != null && rs.next()) {
-                    for (String field : manager.getTableData().getFields()) {
-                        Serializable item;
-                        Class<?> type = manager.getType(field);
-                        if (byte.class.equals(type) || Byte.class.isAssignableFrom(type)) {
-                            item = rs.getByte(field);
-                        }
-                        else if (short.class.equals(type) || Short.class.isAssignableFrom(type)) {
-                            item = rs.getShort(field);
-                        }
-                        else if (int.class.equals(type) || Integer.class.isAssignableFrom(type)) {
-                            item = rs.getInt(field);
-                        }
-                        else if (long.class.equals(type) || Long.class.isAssignableFrom(type)) {
-                            item = rs.getLong(field);
-                        }
-                        else if (float.class.equals(type) || Float.class.isAssignableFrom(type)) {
-                            item = rs.getFloat(field);
-                        }
-                        else if (double.class.equals(type) || Double.class.isAssignableFrom(type)) {
-                            item = rs.getDouble(field);
-                        }
-                        else if (boolean.class.equals(type) || Boolean.class.isAssignableFrom(type)) {
-                            item = rs.getBoolean(field);
-                        }
-                        else if (char.class.equals(type) || Character.class.isAssignableFrom(type)) {
-                            item = rs.getString(field).charAt(0);
-                        }
-                        else if (String.class.isAssignableFrom(type)) {
-                            item = rs.getString(field);
-                        }
-                        else if (UUID.class.isAssignableFrom(type)) {
-                            String rawUUID = rs.getString(field);
-                            item = rawUUID != null ? UUID.fromString(rawUUID) : null;
-                        }
-                        else{
-                            item = (Serializable) rs.getObject(field);
-                        }
-
-                        data.put(field, item);
-                    }
+    public void forEachId(@NotNull String table, @NotNull Consumer<String> action) throws SQLException {
+        StatementPlan plan = getPlan(table);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(plan.keySelectSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Stream the rows instead of loading the whole table in memory
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(plan.readKey(rs).toId());
                 }
-            } catch (SQLException e) {
-                exception[0] = e;
             }
-            return data;
-        }, (Object[]) ids);
-        if (exception[0] != null) {
-            throw exception[0];
-        }
-
-        T dbObject = manager.getInstance(data, false);
-        for (int i = 0; i < ids.length; i++) {
-            manager.setValue(dbObject, pKeyNames[i], ids[i]);
         }
-        return dbObject;
     }
 
     @Override
     public boolean createTable(TableData table) {
+        getPlan(table.getName());
+        Map<String, String> types = new HashMap<>();
+        if (binaryUUIDs) {
+            for (FieldData field : manager.getFields()) {
+                if (StatementPlan.isBinaryUUID(field)) {
+                    types.put(field.name, "BINARY(16)");
+                }
+            }
+        }
         try {
-            return execute(table.getCreateString(prefix));
+            boolean created = execute(table.getCreateString(prefix, types, SQLDialect.MYSQL));
+            if (created && !types.isEmpty()) {
+                migrateToBinaryUUIDs(table.getName());
+            }
+            return created;
         } catch (SQLException e) {
             logger.log(Level.WARNING, "SQLException while creating table " + table.getName());
             e.printStackTrace();
@@ -311,6 +380,56 @@ class MariaDBDriver<T> implements DatabaseDriver<T> {
         return false;
     }
 
+    /**
+     * Converts the UUID columns of a table created before enabling binaryUUIDs. Each column is first changed to
+     * VARBINARY(36), keeping its contents and indexes, then its values are packed into 16 bytes with a single update,
+     * and finally it is changed to BINARY(16). Both ALTER statements rebuild the whole table anyway, so converting the
+     * values in chunks would not shorten any lock and would scan the table again for every chunk.
+     * A conversion that was interrupted continues from the VARBINARY step
+     */
+    private void migrateToBinaryUUIDs(@NotNull String table) throws SQLException {
+        String sqlTable = prefix + table;
+        String typeQuery = "SELECT DATA_TYPE, CHARACTER_OCTET_LENGTH FROM INFORMATION_SCHEMA.COLUMNS"
+                + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?;";
+        try (Connection connection = dataSource.getConnection()) {
+            for (FieldData field : manager.getFields()) {
+                if (!StatementPlan.isBinaryUUID(field)) {
+                    continue;
+                }
+                String dataType;
+                long length;
+                try (PreparedStatement ps = connection.prepareStatement(typeQuery)) {
+                    ps.setString(1, sqlTable);
+                    ps.setString(2, field.name);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) {
+                            continue;
+                        }
+                        dataType = rs.getString(1).toLowerCase(Locale.ROOT);
+                        length = rs.getLong(2);
+                    }
+                }
+                if (dataType.equals("binary") && length == 16) {
+                    continue;
+                }
+                String column = "`" + field.name + "`";
+                String nullability = field.nullable && !field.isPrimary ? " NULL" : " NOT NULL";
+                logger.log(Level.INFO, "Converting column " + field.name + " of table " + sqlTable + " to BINARY(16)");
+                if (!dataType.equals("varbinary")) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.executeUpdate("ALTER TABLE `" + sqlTable + "` MODIFY " + column + " VARBINARY(36)" + nullability + ";");
+                    }
+                }
+                String convert = "UPDATE `" + sqlTable + "` SET " + column + " = UNHEX(REPLACE(" + column + ", '-', ''))"
+                        + " WHERE LENGTH(" + column + ") = 36;";
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate(convert);
+                    statement.executeUpdate("ALTER TABLE `" + sqlTable + "` MODIFY " + column + " BINARY(16)" + nullability + ";");
+                }
+            }
+        }
+    }
+
     @Override
     public boolean dropTable(String table) {
         try {
@@ -323,56 +442,139 @@ class MariaDBDriver<T> implements DatabaseDriver<T> {
     }
 
     private boolean saveData(Connection connection, @NotNull String table, @NotNull T item) throws ReflectiveOperationException {
-        String[] fields = manager.getTableData().getFields().toArray(new String[0]);
-        final String sqlQuery = "INSERT INTO `" + prefix + table
-                + "` (`" + String.join("`, `", fields) + "`) VALUES ("
-                + String.join(", ", Collections.nCopies(fields.length, "?"))
-                + ") ON DUPLICATE KEY UPDATE `" +
-                String.join("` = ?, `", fields) + "` = ?;";
-        Object[] fieldData = new Serializable[fields.length*2];
-        for (int i = 0; i < fields.length; i++) {
-            Serializable data = manager.getValue(item, fields[i]);
-            if (data instanceof UUID) {
-                data = data.toString();
-            }
-            fieldData[i] = data;
-            fieldData[i + fields.length] = data;
-        }
+        StatementPlan plan = getPlan(table);
+        boolean borrowed = connection == null;
         try {
-            if (connection == null) {
-                return execute(sqlQuery, fieldData);
-            } else {
-                return execute(connection, sqlQuery, fieldData);
+            if (borrowed) {
+                connection = dataSource.getConnection();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(plan.upsertSql)) {
+                plan.bindRow(ps, item);
+                ps.executeUpdate();
+                return true;
             }
         } catch (SQLException e) {
             logger.log(Level.WARNING, "SQLException while saving item to table " + table);
             e.printStackTrace();
+        } finally {
+            if (borrowed && connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    logger.log(Level.WARNING, "Error closing connection");
+                    e.printStackTrace();
+                }
+            }
         }
         return false;
     }
 
+    private void saveBatch(@NotNull PreparedStatement ps, @NotNull String table, @NotNull List<DataKey> keys, @NotNull Map<DataKey, Boolean> results) {
+        int[] counts;
+        try {
+            counts = ps.executeBatch();
+        }
+        catch (BatchUpdateException ex) {
+            logger.log(Level.WARNING, "SQLException while saving items to table " + table);
+            ex.printStackTrace();
+            counts = ex.getUpdateCounts();
+        }
+        catch (SQLException ex) {
+            logger.log(Level.WARNING, "SQLException while saving items to table " + table);
+            ex.printStackTrace();
+            counts = new int[0];
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            // Rewritten batches report SUCCESS_NO_INFO instead of the affected rows
+            boolean saved = counts.length == keys.size() && counts[i] != Statement.EXECUTE_FAILED;
+            results.put(keys.get(i), saved);
+        }
+    }
+
     private boolean deleteData(Connection connection, @NotNull String table, @NotNull T item) throws ReflectiveOperationException {
-        String[] pKeyNames = manager.getTableData().getPrimaryKeys().toArray(new String[0]);
-        Arrays.sort(pKeyNames);
-        Serializable[] ids = new Serializable[pKeyNames.length];
-        for (int i = 0; i < pKeyNames.length; i++) {
-            ids[i] = manager.getValue(item, pKeyNames[i]);
-        }
-        String condKey = getSQLConditionKey();
-        String sqlQuery = "DELETE FROM `" + prefix + table + "` WHERE " + condKey + ";";
-        int res = -1;
+        StatementPlan plan = getPlan(table);
+        DataKey key = manager.getKey(item);
+        boolean borrowed = connection == null;
         try {
-            if (connection == null) {
-                res = update(sqlQuery, (Object[]) ids);
-            } else {
-                res = update(connection, sqlQuery, (Object[]) ids);
+            if (borrowed) {
+                connection = dataSource.getConnection();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(plan.deleteSql)) {
+                plan.bindKey(ps, 1, key);
+                ps.executeUpdate();
+                // The item is no longer in the table, whether it was just deleted or it was never stored
+                return true;
             }
         } catch (SQLException e) {
             logger.log(Level.WARNING, "SQLException while deleting item from table " + table);
             e.printStackTrace();
+        } finally {
+            if (borrowed && connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    logger.log(Level.WARNING, "Error closing connection");
+                    e.printStackTrace();
+                }
+            }
+        }
+        return false;
+    }
+
+    private void writeInTransactions(@NotNull Connection connection, @NotNull String table, @NotNull List<DataKey> keys, @NotNull ChunkWriter writer, @NotNull Map<DataKey, Boolean> results) throws SQLException, ReflectiveOperationException {
+        connection.setAutoCommit(false);
+        if (isolationLevel != -1) {
+            connection.setTransactionIsolation(isolationLevel);
+        }
+        try {
+            for (int start = 0; start < keys.size(); start += batchSize) {
+                if (!commitChunk(connection, table, keys, start, Math.min(start + batchSize, keys.size()), writer, results)) {
+                    // The connection is no longer usable
+                    break;
+                }
+            }
         }
+        finally {
+            connection.setAutoCommit(true);
+        }
+    }
 
-        return res == 1;
+    private boolean commitChunk(@NotNull Connection connection, @NotNull String table, @NotNull List<DataKey> keys, int from, int to, @NotNull ChunkWriter writer, @NotNull Map<DataKey, Boolean> results) throws ReflectiveOperationException {
+        try {
+            writer.write(connection, from, to);
+            connection.commit();
+            for (int i = from; i < to; i++) {
+                results.put(keys.get(i), true);
+            }
+            return true;
+        }
+        catch (SQLException ex) {
+            try {
+                connection.rollback();
+            }
+            catch (SQLException rollbackEx) {
+                logger.log(Level.WARNING, "Could not roll back the transaction on table " + table);
+                rollbackEx.printStackTrace();
+                return false;
+            }
+            if (to - from == 1) {
+                logger.log(Level.WARNING, "SQLException while writing item " + keys.get(from) + " to table " + table);
+                ex.printStackTrace();
+                results.put(keys.get(from), false);
+                return true;
+            }
+            // Retry in smaller transactions so only the failing items are left out
+            int middle = (from + to) >>> 1;
+            return commitChunk(connection, table, keys, from, middle, writer, results)
+                    && commitChunk(connection, table, keys, middle, to, writer, results);
+        }
+        catch (ReflectiveOperationException ex) {
+            try {
+                connection.rollback();
+            }
+            catch (SQLException ignored) {}
+            throw ex;
+        }
     }
 
     @Override
@@ -381,35 +583,57 @@ class MariaDBDriver<T> implements DatabaseDriver<T> {
     }
 
     @Override
-    public Map<List<Serializable>, Boolean> saveData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
-        Map<List<Serializable>, Boolean> results = new HashMap<>();
+    public Map<DataKey, Boolean> saveData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
+        Map<DataKey, Boolean> results = new HashMap<>();
         if (items.isEmpty()) {
             return results;
         }
-        Connection connection = null;
-        try {
-            connection = dataSource.getConnection();
+        StatementPlan plan = getPlan(table);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(plan.upsertSql)) {
+            if (transactions) {
+                List<DataKey> keys = new ArrayList<>(items.size());
+                for (T item : items) {
+                    keys.add(manager.getKey(item));
+                }
+                writeInTransactions(connection, table, keys, (conn, from, to) -> {
+                    ps.clearBatch();
+                    for (T item : items.subList(from, to)) {
+                        plan.bindRow(ps, item);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }, results);
+            }
+            else {
+                saveBatches(ps, plan, table, items, results);
+            }
         }
         catch (SQLException ex) {
-            logger.log(Level.WARNING, "Could not get the connection!");
-            return results;
+            logger.log(Level.WARNING, "SQLException while saving items to table " + table);
+            ex.printStackTrace();
+        }
+        for (T item : items) {
+            results.putIfAbsent(manager.getKey(item), false);
         }
-        String[] keyNames = manager.getTableData().getPrimaryKeys().toArray(new String[0]);
-        Arrays.sort(keyNames);
-        Serializable[] keys = new Serializable[keyNames.length];
+        return results;
+    }
+
+    private void saveBatches(@NotNull PreparedStatement ps, @NotNull StatementPlan plan, @NotNull String table, @NotNull List<T> items, @NotNull Map<DataKey, Boolean> results) throws SQLException, ReflectiveOperationException {
+        List<DataKey> batch = new ArrayList<>(Math.min(batchSize, items.size()));
         for (T item : items) {
-            for (int i = 0; i < keyNames.length; i++) {
-                keys[i] = manager.getValue(item, keyNames[i]);
+            DataKey key = manager.getKey(item);
+            plan.bindRow(ps, item);
+            ps.addBatch();
+            batch.add(key);
+            if (batch.size() >= batchSize) {
+                saveBatch(ps, table, batch, results);
+                batch.clear();
             }
-            results.put(Arrays.asList(keys), saveData(connection, table, item));
         }
-        try {
-            connection.close();
-        } catch (SQLException e) {
-            logger.log(Level.WARNING, "Error while closing connection after saving item list");
-            e.printStackTrace();
+        if (!batch.isEmpty()) {
+            saveBatch(ps, table, batch, results);
         }
-        return results;
     }
 
     @Override
@@ -418,34 +642,78 @@ class MariaDBDriver<T> implements DatabaseDriver<T> {
     }
 
     @Override
-    public Map<List<Serializable>, Boolean> deleteData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
-        Map<List<Serializable>, Boolean> results = new HashMap<>();
+    public Map<DataKey, Boolean> deleteData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
+        Map<DataKey, Boolean> results = new HashMap<>();
         if (items.isEmpty()) {
             return results;
         }
-        Connection connection = null;
+        Set<DataKey> keySet = new LinkedHashSet<>();
+        for (T item : items) {
+            keySet.add(manager.getKey(item));
+        }
+        List<DataKey> keys = new ArrayList<>(keySet);
+        StatementPlan plan = getPlan(table);
+        Connection connection;
         try {
             connection = dataSource.getConnection();
         }
         catch (SQLException ex) {
             logger.log(Level.WARNING, "Could not get the connection!");
+            keys.forEach(key -> results.put(key, false));
             return results;
         }
-        String[] keyNames = manager.getTableData().getPrimaryKeys().toArray(new String[0]);
-        Arrays.sort(keyNames);
-        Serializable[] keys = new Serializable[keyNames.length];
-        for (T item : items) {
-            for (int i = 0; i < keyNames.length; i++) {
-                keys[i] = manager.getValue(item, keyNames[i]);
+        if (transactions) {
+            try {
+                writeInTransactions(connection, table, keys, (conn, from, to) -> {
+                    for (int start = from; start < to; start += KEY_CHUNK_SIZE) {
+                        List<DataKey> chunk = keys.subList(start, Math.min(start + KEY_CHUNK_SIZE, to));
+                        try (PreparedStatement ps = conn.prepareStatement(plan.deleteInSql(chunk.size()))) {
+                            int index = 1;
+                            for (DataKey key : chunk) {
+                                index = plan.bindKey(ps, index, key);
+                            }
+                            ps.executeUpdate();
+                        }
+                    }
+                }, results);
+            }
+            catch (SQLException e) {
+                logger.log(Level.WARNING, "SQLException while deleting items from table " + table);
+                e.printStackTrace();
+            }
+            keys.forEach(key -> results.putIfAbsent(key, false));
+        }
+        else {
+            for (int start = 0; start < keys.size(); start += KEY_CHUNK_SIZE) {
+                List<DataKey> chunk = keys.subList(start, Math.min(start + KEY_CHUNK_SIZE, keys.size()));
+                boolean deleted = false;
+                try (PreparedStatement ps = connection.prepareStatement(plan.deleteInSql(chunk.size()))) {
+                    int index = 1;
+                    for (DataKey key : chunk) {
+                        index = plan.bindKey(ps, index, key);
+                    }
+                    ps.executeUpdate();
+                    // The statement either removes every matching row or none, so the whole chunk shares the result
+                    deleted = true;
+                } catch (SQLException e) {
+                    logger.log(Level.WARNING, "SQLException while deleting items from table " + table);
+                    e.printStackTrace();
+                }
+                boolean chunkDeleted = deleted;
+                chunk.forEach(key -> results.put(key, chunkDeleted));
             }
-            results.put(Arrays.asList(keys), deleteData(connection, table, item));
         }
         try {
             connection.close();
         } catch (SQLException e) {
-            logger.log(Level.WARNING, "Error while closing connection after saving item list");
+            logger.log(Level.WARNING, "Error while closing connection after deleting item list");
             e.printStackTrace();
         }
         return results;
     }
+
+    @Override
+    public void close() {
+        dataSource.close();
+    }
 }
@@ -0,0 +1,240 @@
+package com.clanjhoo.dbhandler.data;
+
+import com.clanjhoo.dbhandler.utils.TriFunction;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+class MemoryDriver<T> implements DatabaseDriver<T> {
+    private final Logger logger;
+    private final DBObjectManager<T> manager;
+    private final FieldData[] fields;
+    private final Map<String, Map<String, Object[]>> tables = new ConcurrentHashMap<>();
+    private final long latency;
+    private final long jitter;
+    private final double failureRate;
+
+    /**
+     * Instantiates a new in-memory storage driver. Used when StorageType.MEMORY is selected when instantiating DBObjectManager.
+     * Nothing is written to the disk and every stored item is lost when the server stops, so it is only meant to measure
+     * the manager apart from any storage and to test plugins without a database.
+     * Items are stored as a copy of the values of their fields, so changing a loaded item does not change the stored
+     * one. Values of mutable types such as lists are not copied and are shared with the stored item
+     * @param plugin The plugin that has created the object. This will be passed automatically by DBObjectManager constructor
+     * @param manager The DBObjectManager that is using this driver. This will be passed automatically by DBObjectManager constructor
+     * @param options Optional settings of the driver. Can be passed in the config array of the DBObjectManager constructor.
+     *                "latency" (Number, default 0): milliseconds every operation waits before running, as a database round trip would.
+     *                "jitter" (Number, default 0): maximum random milliseconds added to the latency of each operation.
+     *                "failureRate" (Number, default 0): probability between 0 and 1 of an operation failing. Failed reads
+     *                throw an IOException and failed writes report every item of the call as not written
+     * @see DBObjectManager#DBObjectManager(Class clazz, JavaPlugin plugin, StorageType type, TriFunction eventFactory, Predicate saveCondition, int inactiveTime, Object... config)
+     */
+    MemoryDriver(@NotNull JavaPlugin plugin, @NotNull DBObjectManager<T> manager, @NotNull Map<String, ?> options) {
+        this.logger = plugin.getLogger();
+        this.manager = manager;
+        this.fields = manager.getFields();
+        this.latency = toNanos(getNumber(options, "latency", 0));
+        this.jitter = toNanos(getNumber(options, "jitter", 0));
+        this.failureRate = getNumber(options, "failureRate", 0).doubleValue();
+        if (latency < 0 || jitter < 0) {
+            throw new IllegalArgumentException("The latency and jitter can not be negative");
+        }
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("The failure rate must be between 0 and 1");
+        }
+    }
+
+    private static Number getNumber(@NotNull Map<String, ?> options, @NotNull String name, @NotNull Number defaultValue) {
+        Object value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("The option " + name + " must be a number");
+        }
+        return (Number) value;
+    }
+
+    private static long toNanos(@NotNull Number millis) {
+        return (long) (millis.doubleValue() * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * Waits the configured latency and decides whether the operation fails
+     * @return true if the operation has to fail
+     */
+    private boolean simulate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = jitter > 0 ? latency + random.nextLong(jitter + 1) : latency;
+        if (delay > 0) {
+            long deadline = System.nanoTime() + delay;
+            long remaining = delay;
+            // parkNanos may return early, but an interrupted thread stops waiting like a cancelled query would
+            while (remaining > 0 && !Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(remaining);
+                remaining = deadline - System.nanoTime();
+            }
+        }
+        return failureRate > 0 && random.nextDouble() < failureRate;
+    }
+
+    @NotNull
+    private Map<String, Object[]> getTable(@NotNull String table) {
+        Map<String, Object[]> rows = tables.get(table);
+        if (rows == null) {
+            throw new NoSuchElementException("The table " + table + " does not exist");
+        }
+        return rows;
+    }
+
+    private Object[] toRow(@NotNull T item) throws ReflectiveOperationException {
+        Object[] row = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            row[i] = fields[i].get(item);
+        }
+        return row;
+    }
+
+    @NotNull
+    private T fromRow(Object[] row, @NotNull DataKey key) throws ReflectiveOperationException {
+        T dbObject;
+        if (row != null) {
+            dbObject = manager.newInstance();
+            for (int i = 0; i < fields.length; i++) {
+                fields[i].set(dbObject, row[i]);
+            }
+        }
+        else {
+            // Absent items get the default value of each field, like in every other driver
+            dbObject = manager.getInstance(Collections.emptyMap(), false);
+        }
+        FieldData[] pKeyFields = manager.getPrimaryKeyFields();
+        for (int i = 0; i < pKeyFields.length; i++) {
+            pKeyFields[i].set(dbObject, key.get(i));
+        }
+        return dbObject;
+    }
+
+    @Override
+    public boolean contains(@NotNull String table, @NotNull DataKey key) throws IOException {
+        Map<String, Object[]> rows = getTable(table);
+        if (simulate()) {
+            throw new IOException("Injected failure while querying table " + table);
+        }
+        return rows.containsKey(key.toId());
+    }
+
+    @Override
+    public @NotNull T loadData(@NotNull String table, @NotNull DataKey key) throws IOException, ReflectiveOperationException {
+        if (manager.getPrimaryKeyFields().length != key.size()) {
+            throw new IllegalArgumentException("You must specify a value for each primary key defined for the object");
+        }
+        Map<String, Object[]> rows = getTable(table);
+        if (simulate()) {
+            throw new IOException("Injected failure while loading from table " + table);
+        }
+        return fromRow(rows.get(key.toId()), key);
+    }
+
+    @Override
+    public @NotNull Map<DataKey, T> loadData(@NotNull String table, @NotNull List<DataKey> keys) throws IOException, ReflectiveOperationException {
+        Map<DataKey, T> results = new HashMap<>();
+        if (keys.isEmpty()) {
+            return results;
+        }
+        Map<String, Object[]> rows = getTable(table);
+        // The whole batch pays a single round trip, as it would against a database
+        if (simulate()) {
+            throw new IOException("Injected failure while loading from table " + table);
+        }
+        for (DataKey key : keys) {
+            if (!results.containsKey(key)) {
+                results.put(key, fromRow(rows.get(key.toId()), key));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void forEachId(@NotNull String table, @NotNull Consumer<String> action) throws IOException {
+        Map<String, Object[]> rows = getTable(table);
+        if (simulate()) {
+            throw new IOException("Injected failure while scanning table " + table);
+        }
+        rows.keySet().forEach(action);
+    }
+
+    @Override
+    public boolean createTable(TableData table) {
+        tables.computeIfAbsent(table.getName(), name -> new ConcurrentHashMap<>());
+        return true;
+    }
+
+    @Override
+    public boolean dropTable(String table) {
+        tables.remove(table);
+        return true;
+    }
+
+    @Override
+    public boolean saveData(@NotNull String table, @NotNull T item) throws ReflectiveOperationException {
+        return saveData(table, Collections.singletonList(item)).values().iterator().next();
+    }
+
+    @Override
+    public Map<DataKey, Boolean> saveData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
+        Map<String, Object[]> rows = getTable(table);
+        Map<DataKey, Boolean> results = new HashMap<>();
+        Map<String, Object[]> values = new LinkedHashMap<>();
+        for (T item : items) {
+            DataKey key = manager.getKey(item);
+            values.put(key.toId(), toRow(item));
+            results.put(key, false);
+        }
+        if (simulate()) {
+            logger.log(Level.FINE, "Injected failure while saving " + items.size() + " items to table " + table);
+            return results;
+        }
+        rows.putAll(values);
+        results.replaceAll((key, saved) -> true);
+        return results;
+    }
+
+    @Override
+    public boolean deleteData(@NotNull String table, @NotNull T item) throws ReflectiveOperationException {
+        return deleteData(table, Collections.singletonList(item)).values().iterator().next();
+    }
+
+    @Override
+    public Map<DataKey, Boolean> deleteData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
+        Map<String, Object[]> rows = getTable(table);
+        Map<DataKey, Boolean> results = new HashMap<>();
+        for (T item : items) {
+            results.put(manager.getKey(item), false);
+        }
+        if (simulate()) {
+            logger.log(Level.FINE, "Injected failure while deleting " + items.size() + " items from table " + table);
+            return results;
+        }
+        for (DataKey key : results.keySet()) {
+            rows.remove(key.toId());
+        }
+        results.replaceAll((key, deleted) -> true);
+        return results;
+    }
+
+    @Override
+    public void close() {
+        tables.clear();
+    }
+}
@@ -0,0 +1,200 @@
+package com.clanjhoo.dbhandler.data;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the metrics of a DBObjectManager and its driver. Only the storage operations record anything, the lookups of
+ * objects in memory are counted by the cache itself, so polling the metrics does not slow them down
+ */
+final class MetricsRecorder {
+    final HistogramRecorder loadLatency = new HistogramRecorder();
+    final HistogramRecorder batchLoadLatency = new HistogramRecorder();
+    final HistogramRecorder saveLatency = new HistogramRecorder();
+    final HistogramRecorder deleteLatency = new HistogramRecorder();
+    final HistogramRecorder existsLatency = new HistogramRecorder();
+    final HistogramRecorder loadBatchSize = new HistogramRecorder();
+    final HistogramRecorder saveBatchSize = new HistogramRecorder();
+    final HistogramRecorder poolWait = new HistogramRecorder();
+    final LongAdder driverErrors = new LongAdder();
+    final LongAdder poolTimeouts = new LongAdder();
+
+    /**
+     * Returns a factory of Hikari metrics trackers that record the connection waits and timeouts of a pool
+     * @return the factory to set in the configuration of the pool
+     */
+    @NotNull
+    MetricsTrackerFactory poolTracker() {
+        return (poolName, poolStats) -> new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                poolWait.record(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                poolTimeouts.increment();
+            }
+        };
+    }
+
+    /**
+     * Takes a snapshot of the recorded metrics, together with the state of the manager
+     * @param table the name of the table handled by the manager
+     * @param inFlightLoads the amount of loads that have not finished yet
+     * @return the snapshot
+     */
+    @NotNull
+    ManagerMetrics snapshot(@NotNull String table, int cacheSize, long cacheHitCount, long cacheMissCount, long cacheEvictionCount, int inFlightLoads) {
+        return new ManagerMetrics(table, cacheSize, cacheHitCount, cacheMissCount, cacheEvictionCount, inFlightLoads,
+                driverErrors.sum(), poolTimeouts.sum(),
+                loadLatency.snapshot(), batchLoadLatency.snapshot(), saveLatency.snapshot(),
+                deleteLatency.snapshot(), existsLatency.snapshot(),
+                loadBatchSize.snapshot(), saveBatchSize.snapshot(), poolWait.snapshot());
+    }
+
+    /**
+     * Exports the metrics of a manager as an MXBean of the platform MBean server. An MXBean left registered with the
+     * same name, as happens when a plugin is reloaded, is replaced
+     * @param plugin the name of the plugin owning the manager
+     * @param table the name of the table handled by the manager
+     * @param metrics supplies a new snapshot of the metrics whenever an attribute is read
+     * @param logger the logger reporting registration errors
+     * @return the name of the MXBean, null if it could not be registered
+     */
+    @Nullable
+    static ObjectName register(@NotNull String plugin, @NotNull String table, @NotNull Supplier<ManagerMetrics> metrics, @NotNull Logger logger) {
+        try {
+            ObjectName name = new ObjectName("com.clanjhoo.dbhandler:type=DBObjectManager,plugin=" + ObjectName.quote(plugin) + ",table=" + ObjectName.quote(table));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new Bean(metrics), name);
+            return name;
+        }
+        catch (JMException | SecurityException ex) {
+            logger.log(Level.WARNING, "Could not export the metrics of table " + table + " through JMX");
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Removes an MXBean registered by {@link #register(String, String, Supplier, Logger)}
+     * @param name the name of the MXBean, null does nothing
+     * @param logger the logger reporting errors
+     */
+    static void unregister(@Nullable ObjectName name, @NotNull Logger logger) {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+        catch (InstanceNotFoundException ex) {
+            // Already replaced by a newer manager of the same table
+        }
+        catch (JMException | SecurityException ex) {
+            logger.log(Level.WARNING, "Could not remove the JMX metrics " + name);
+            ex.printStackTrace();
+        }
+    }
+
+    private static final class Bean implements ManagerMetricsMXBean {
+        private final Supplier<ManagerMetrics> metrics;
+
+        private Bean(@NotNull Supplier<ManagerMetrics> metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public String getTable() {
+            return metrics.get().getTable();
+        }
+
+        @Override
+        public int getCacheSize() {
+            return metrics.get().getCacheSize();
+        }
+
+        @Override
+        public long getCacheHitCount() {
+            return metrics.get().getCacheHitCount();
+        }
+
+        @Override
+        public long getCacheMissCount() {
+            return metrics.get().getCacheMissCount();
+        }
+
+        @Override
+        public long getCacheEvictionCount() {
+            return metrics.get().getCacheEvictionCount();
+        }
+
+        @Override
+        public int getInFlightLoads() {
+            return metrics.get().getInFlightLoads();
+        }
+
+        @Override
+        public long getDriverErrorCount() {
+            return metrics.get().getDriverErrorCount();
+        }
+
+        @Override
+        public long getPoolTimeoutCount() {
+            return metrics.get().getPoolTimeoutCount();
+        }
+
+        @Override
+        public ManagerMetrics.Histogram getLoadLatency() {
+            return metrics.get().getLoadLatency();
+        }
+
+        @Override
+        public ManagerMetrics.Histogram getBatchLoadLatency() {
+            return metrics.get().getBatchLoadLatency();
+        }
+
+        @Override
+        public ManagerMetrics.Histogram getSaveLatency() {
+            return metrics.get().getSaveLatency();
+        }
+
+        @Override
+        public ManagerMetrics.Histogram getDeleteLatency() {
+            return metrics.get().getDeleteLatency();
+        }
+
+        @Override
+        public ManagerMetrics.Histogram getExistsLatency() {
+            return metrics.get().getExistsLatency();
+        }
+
+        @Override
+        public ManagerMetrics.Histogram getLoadBatchSize() {
+            return metrics.get().getLoadBatchSize();
+        }
+
+        @Override
+        public ManagerMetrics.Histogram getSaveBatchSize() {
+            return metrics.get().getSaveBatchSize();
+        }
+
+        @Override
+        public ManagerMetrics.Histogram getPoolWait() {
+            return metrics.get().getPoolWait();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.clanjhoo.dbhandler.data;
+
+/**
+ * The SQL dialects the statements of a table can be generated for
+ */
+public enum SQLDialect {
+    /**
+     * The dialect of MariaDB and MySQL servers
+     */
+    MYSQL,
+    /**
+     * The dialect of embedded SQLite databases
+     */
+    SQLITE;
+}
@@ -0,0 +1,371 @@
+package com.clanjhoo.dbhandler.data;
+
+import com.clanjhoo.dbhandler.utils.TriFunction;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+class SQLiteDriver<T> implements DatabaseDriver<T> {
+    private static final int DEFAULT_READERS = 4;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int BUSY_TIMEOUT = 5000;
+    // SQLite builds older than 3.32 accept at most 999 parameters per statement
+    private static final int MAX_PARAMETERS = 999;
+
+    @FunctionalInterface
+    private interface ChunkWriter {
+        void write(int from, int to) throws SQLException, ReflectiveOperationException;
+    }
+
+    private final Logger logger;
+    private final DBObjectManager<T> manager;
+    private final HikariDataSource readers;
+    private final Connection writer;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Map<String, StatementPlan> plans = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final int keyChunkSize;
+
+    /**
+     * Instantiates a new SQLite Driver object. Used when StorageType.SQLITE is selected when instantiating DBObjectManager.
+     * The database is opened in WAL mode, so reads run in parallel through a pool of connections while every write goes
+     * through a single connection, in transactions of up to batchSize rows.
+     * The SQLite JDBC driver is bundled with the server, so it is not shaded
+     * @param plugin The plugin that has created the object. This will be passed automatically by DBObjectManager constructor
+     * @param manager The DBObjectManager that is using this driver. This will be passed automatically by DBObjectManager constructor
+     * @param fileName The name of the database file, created inside the plugin data folder. Must be passed in the config array of the DBObjectManager constructor
+     * @param options Optional settings of the driver. Can be passed after the file name in the config array of the DBObjectManager constructor.
+     *                "readers" (Integer, default 4): amount of connections used to read.
+     *                "batchSize" (Integer, default 1000): maximum amount of rows written in each transaction.
+     *                "synchronous" (String, default NORMAL): the synchronous pragma of the database. NORMAL may lose the
+     *                last transactions on a power loss but never corrupts the database, FULL syncs every commit
+     * @throws IOException if the database could not be opened
+     * @see DBObjectManager#DBObjectManager(Class clazz, JavaPlugin plugin, StorageType type, TriFunction eventFactory, Predicate saveCondition, int inactiveTime, Object... config)
+     */
+    SQLiteDriver(@NotNull JavaPlugin plugin, @NotNull DBObjectManager<T> manager, @NotNull String fileName, @NotNull Map<String, ?> options) throws IOException {
+        this.logger = plugin.getLogger();
+        this.manager = manager;
+        Object batch = options.get("batchSize");
+        this.batchSize = batch instanceof Integer && (Integer) batch > 0 ? (Integer) batch : DEFAULT_BATCH_SIZE;
+        this.keyChunkSize = Math.max(1, Math.min(500, MAX_PARAMETERS / manager.getPrimaryKeyFields().length));
+        Object readerCount = options.get("readers");
+        int poolSize = readerCount instanceof Integer && (Integer) readerCount > 0 ? (Integer) readerCount : DEFAULT_READERS;
+        String synchronous = options.get("synchronous") != null ? options.get("synchronous").toString().toUpperCase(Locale.ROOT) : "NORMAL";
+        if (!Set.of("OFF", "NORMAL", "FULL", "EXTRA").contains(synchronous)) {
+            throw new IllegalArgumentException("Unknown synchronous mode " + synchronous);
+        }
+
+        File file = new File(plugin.getDataFolder(), fileName);
+        File folder = file.getParentFile();
+        if (folder != null && folder.mkdirs()) {
+            logger.log(Level.FINE, "Created the folder of the SQLite database");
+        }
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        try {
+            this.writer = DriverManager.getConnection(url);
+            try (Statement statement = writer.createStatement()) {
+                // WAL lets readers run while a transaction is being written
+                statement.execute("PRAGMA journal_mode = WAL;");
+                statement.execute("PRAGMA synchronous = " + synchronous + ";");
+                statement.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT + ";");
+            }
+            writer.setAutoCommit(false);
+        }
+        catch (SQLException ex) {
+            throw new IOException("Could not open the SQLite database " + file, ex);
+        }
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setPoolName("DBHandler SQLite readers");
+        config.setMaximumPoolSize(poolSize);
+        config.addDataSourceProperty("busy_timeout", String.valueOf(BUSY_TIMEOUT));
+        config.setConnectionInitSql("PRAGMA query_only = ON;");
+        config.setMetricsTrackerFactory(manager.getMetricsRecorder().poolTracker());
+        this.readers = new HikariDataSource(config);
+    }
+
+    private StatementPlan getPlan(@NotNull String table) {
+        return plans.computeIfAbsent(table, name -> new StatementPlan(name, manager.getFields(), manager.getPrimaryKeyFields(), false, SQLDialect.SQLITE));
+    }
+
+    @Override
+    public boolean contains(@NotNull String table, @NotNull DataKey key) throws SQLException {
+        StatementPlan plan = getPlan(table);
+        try (Connection connection = readers.getConnection();
+             PreparedStatement ps = connection.prepareStatement(plan.existsSql)) {
+            plan.bindKey(ps, 1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private T getDefault(@NotNull DataKey key) throws ReflectiveOperationException {
+        T dbObject = manager.getInstance(Collections.emptyMap(), false);
+        FieldData[] keyColumns = manager.getPrimaryKeyFields();
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyColumns[i].set(dbObject, key.get(i));
+        }
+        return dbObject;
+    }
+
+    @Override
+    public @NotNull T loadData(@NotNull String table, @NotNull DataKey key) throws SQLException, ReflectiveOperationException {
+        StatementPlan plan = getPlan(table);
+        if (key.size() != plan.keyColumns.length) {
+            throw new IllegalArgumentException("You must specify a value for each primary key defined for the object");
+        }
+        T dbObject = null;
+        try (Connection connection = readers.getConnection();
+             PreparedStatement ps = connection.prepareStatement(plan.selectSql)) {
+            plan.bindKey(ps, 1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    dbObject = manager.newInstance();
+                    plan.readRow(rs, dbObject);
+                }
+            }
+        }
+        if (dbObject == null) {
+            return getDefault(key);
+        }
+
+        for (int i = 0; i < plan.keyColumns.length; i++) {
+            plan.keyColumns[i].set(dbObject, key.get(i));
+        }
+        return dbObject;
+    }
+
+    @Override
+    public @NotNull Map<DataKey, T> loadData(@NotNull String table, @NotNull List<DataKey> keys) throws SQLException, ReflectiveOperationException {
+        Map<DataKey, T> results = new HashMap<>();
+        if (keys.isEmpty()) {
+            return results;
+        }
+        StatementPlan plan = getPlan(table);
+        // Rows come back with the types of the fields, so match them against keys converted to those types
+        Map<DataKey, DataKey> requested = new HashMap<>();
+        for (DataKey key : keys) {
+            requested.put(manager.normalizeKey(key), key);
+        }
+        List<DataKey> pending = new ArrayList<>(requested.keySet());
+        try (Connection connection = readers.getConnection()) {
+            for (int start = 0; start < pending.size(); start += keyChunkSize) {
+                List<DataKey> chunk = pending.subList(start, Math.min(start + keyChunkSize, pending.size()));
+                try (PreparedStatement ps = connection.prepareStatement(plan.selectInSql(chunk.size()))) {
+                    int index = 1;
+                    for (DataKey key : chunk) {
+                        index = plan.bindKey(ps, index, key);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            T dbObject = manager.newInstance();
+                            plan.readRow(rs, dbObject);
+                            DataKey key = requested.get(manager.getKey(dbObject));
+                            if (key != null) {
+                                results.put(key, dbObject);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        for (DataKey key : keys) {
+            if (!results.containsKey(key)) {
+                results.put(key, getDefault(key));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void forEachId(@NotNull String table, @NotNull Consumer<String> action) throws SQLException {
+        StatementPlan plan = getPlan(table);
+        try (Connection connection = readers.getConnection();
+             PreparedStatement ps = connection.prepareStatement(plan.keySelectSql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                action.accept(plan.readKey(rs).toId());
+            }
+        }
+    }
+
+    @Override
+    public boolean createTable(TableData table) {
+        getPlan(table.getName());
+        writeLock.lock();
+        try (Statement statement = writer.createStatement()) {
+            statement.execute(table.getCreateString("", Collections.emptyMap(), SQLDialect.SQLITE));
+            writer.commit();
+            return true;
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "SQLException while creating table " + table.getName());
+            e.printStackTrace();
+            rollback(table.getName());
+        }
+        finally {
+            writeLock.unlock();
+        }
+        return false;
+    }
+
+    @Override
+    public boolean dropTable(String table) {
+        writeLock.lock();
+        try (Statement statement = writer.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS `" + table + "`;");
+            writer.commit();
+            return true;
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "SQLException while dropping table " + table);
+            e.printStackTrace();
+            rollback(table);
+        }
+        finally {
+            writeLock.unlock();
+        }
+        return false;
+    }
+
+    private void rollback(@NotNull String table) {
+        try {
+            writer.rollback();
+        }
+        catch (SQLException e) {
+            logger.log(Level.WARNING, "Could not roll back the transaction on table " + table);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the keys in transactions of up to batchSize rows through the writer connection. A failed transaction is
+     * retried in halves, so only the rows that can not be written are left out
+     */
+    private void writeInTransactions(@NotNull String table, @NotNull List<DataKey> keys, @NotNull ChunkWriter chunkWriter, @NotNull Map<DataKey, Boolean> results) throws ReflectiveOperationException {
+        writeLock.lock();
+        try {
+            for (int start = 0; start < keys.size(); start += batchSize) {
+                commitChunk(table, keys, start, Math.min(start + batchSize, keys.size()), chunkWriter, results);
+            }
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void commitChunk(@NotNull String table, @NotNull List<DataKey> keys, int from, int to, @NotNull ChunkWriter chunkWriter, @NotNull Map<DataKey, Boolean> results) throws ReflectiveOperationException {
+        try {
+            chunkWriter.write(from, to);
+            writer.commit();
+            for (int i = from; i < to; i++) {
+                results.put(keys.get(i), true);
+            }
+        }
+        catch (SQLException ex) {
+            rollback(table);
+            if (to - from == 1) {
+                logger.log(Level.WARNING, "SQLException while writing item " + keys.get(from) + " to table " + table);
+                ex.printStackTrace();
+                results.put(keys.get(from), false);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            commitChunk(table, keys, from, middle, chunkWriter, results);
+            commitChunk(table, keys, middle, to, chunkWriter, results);
+        }
+        catch (ReflectiveOperationException ex) {
+            rollback(table);
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean saveData(@NotNull String table, @NotNull T item) throws ReflectiveOperationException {
+        return saveData(table, Collections.singletonList(item)).values().iterator().next();
+    }
+
+    @Override
+    public Map<DataKey, Boolean> saveData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
+        Map<DataKey, Boolean> results = new HashMap<>();
+        if (items.isEmpty()) {
+            return results;
+        }
+        StatementPlan plan = getPlan(table);
+        List<DataKey> keys = new ArrayList<>(items.size());
+        for (T item : items) {
+            keys.add(manager.getKey(item));
+        }
+        writeInTransactions(table, keys, (from, to) -> {
+            try (PreparedStatement ps = writer.prepareStatement(plan.upsertSql)) {
+                for (T item : items.subList(from, to)) {
+                    plan.bindRow(ps, item);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }, results);
+        return results;
+    }
+
+    @Override
+    public boolean deleteData(@NotNull String table, @NotNull T item) throws ReflectiveOperationException {
+        return deleteData(table, Collections.singletonList(item)).values().iterator().next();
+    }
+
+    @Override
+    public Map<DataKey, Boolean> deleteData(@NotNull String table, @NotNull List<T> items) throws ReflectiveOperationException {
+        Map<DataKey, Boolean> results = new HashMap<>();
+        if (items.isEmpty()) {
+            return results;
+        }
+        Set<DataKey> keySet = new LinkedHashSet<>();
+        for (T item : items) {
+            keySet.add(manager.getKey(item));
+        }
+        List<DataKey> keys = new ArrayList<>(keySet);
+        StatementPlan plan = getPlan(table);
+        writeInTransactions(table, keys, (from, to) -> {
+            for (int start = from; start < to; start += keyChunkSize) {
+                List<DataKey> chunk = keys.subList(start, Math.min(start + keyChunkSize, to));
+                try (PreparedStatement ps = writer.prepareStatement(plan.deleteInSql(chunk.size()))) {
+                    int index = 1;
+                    for (DataKey key : chunk) {
+                        index = plan.bindKey(ps, index, key);
+                    }
+                    ps.executeUpdate();
+                }
+            }
+        }, results);
+        return results;
+    }
+
+    @Override
+    public void close() {
+        readers.close();
+        writeLock.lock();
+        try {
+            // Closing the last connection checkpoints the WAL into the database file
+            writer.close();
+        }
+        catch (SQLException e) {
+            logger.log(Level.WARNING, "Error while closing the SQLite database");
+            e.printStackTrace();
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.clanjhoo.dbhandler.data;
+
+import com.clanjhoo.dbhandler.annotations.DataField;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The SQL statements used to access a table, compiled once from the fields of its DBObjectManager.
+ * Columns follow the order of the fields of the manager and key columns are sorted alphabetically, like the values of
+ * a DataKey. Every column has a binder and a reader chosen from the type of its field, so binding a value does not
+ * inspect its class and rows are read by column position straight into the entity
+ */
+final class StatementPlan {
+    @FunctionalInterface
+    interface ColumnBinder {
+        void bind(@NotNull PreparedStatement ps, int index, Object value) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface ColumnReader {
+        Object read(@NotNull ResultSet rs, int index) throws SQLException;
+    }
+
+    final FieldData[] columns;
+    final FieldData[] keyColumns;
+    final String existsSql;
+    final String selectSql;
+    final String upsertSql;
+    final String deleteSql;
+    final String keySelectSql;
+    private final ColumnBinder[] binders;
+    private final ColumnBinder[] keyBinders;
+    private final ColumnReader[] readers;
+    private final ColumnReader[] keyReaders;
+    private final String columnList;
+    private final String table;
+    private final String keyList;
+    private final String keyTuple;
+    private final Map<Integer, String> selectInSql = new ConcurrentHashMap<>();
+    private final Map<Integer, String> deleteInSql = new ConcurrentHashMap<>();
+
+    /**
+     * Compiles the statements of a table
+     * @param table the name of the table, including its prefix
+     * @param columns the fields stored in the table
+     * @param keyColumns the fields composing the primary key, sorted alphabetically by their names
+     * @param binaryUUIDs whether UUID fields without a custom SQL type are stored as BINARY(16)
+     * @param dialect the dialect of the database running the statements
+     */
+    StatementPlan(@NotNull String table, @NotNull FieldData[] columns, @NotNull FieldData[] keyColumns, boolean binaryUUIDs, @NotNull SQLDialect dialect) {
+        this.table = table;
+        this.columns = columns;
+        this.keyColumns = keyColumns;
+        this.binders = new ColumnBinder[columns.length];
+        this.readers = new ColumnReader[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            boolean binary = binaryUUIDs && isBinaryUUID(columns[i]);
+            binders[i] = binary ? StatementPlan::bindBinaryUUID : binderFor(columns[i].type);
+            readers[i] = binary ? StatementPlan::readBinaryUUID : readerFor(columns[i].type);
+        }
+        this.keyBinders = new ColumnBinder[keyColumns.length];
+        this.keyReaders = new ColumnReader[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            boolean binary = binaryUUIDs && isBinaryUUID(keyColumns[i]);
+            keyBinders[i] = binary ? StatementPlan::bindBinaryUUID : binderFor(keyColumns[i].type);
+            keyReaders[i] = binary ? StatementPlan::readBinaryUUID : readerFor(keyColumns[i].type);
+        }
+
+        String[] names = new String[columns.length];
+        String[] updates = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            names[i] = "`" + columns[i].name + "`";
+            updates[i] = names[i] + " = VALUES(" + names[i] + ")";
+        }
+        String[] keyNames = new String[keyColumns.length];
+        String[] keyConds = new String[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyNames[i] = "`" + keyColumns[i].name + "`";
+            keyConds[i] = keyNames[i] + " = ?";
+        }
+        String condKey = String.join(" AND ", keyConds);
+        // Select the columns explicitly so their positions match the readers
+        columnList = String.join(", ", names);
+        if (keyColumns.length == 1) {
+            keyList = keyNames[0];
+            keyTuple = "?";
+        }
+        else {
+            keyList = "(" + String.join(", ", keyNames) + ")";
+            keyTuple = "(" + String.join(", ", Collections.nCopies(keyColumns.length, "?")) + ")";
+        }
+
+        existsSql = "SELECT 1 FROM `" + table + "` WHERE " + condKey + " LIMIT 1;";
+        selectSql = "SELECT " + columnList + " FROM `" + table + "` WHERE " + condKey + " LIMIT 1;";
+        String values = " (" + String.join(", ", names) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+        if (dialect == SQLDialect.SQLITE) {
+            // Every column is written, so replacing the row is the same as updating it
+            upsertSql = "INSERT OR REPLACE INTO `" + table + "`" + values + ";";
+        }
+        else {
+            upsertSql = "INSERT INTO `" + table + "`" + values + " ON DUPLICATE KEY UPDATE " + String.join(", ", updates) + ";";
+        }
+        deleteSql = "DELETE FROM `" + table + "` WHERE " + condKey + ";";
+        keySelectSql = "SELECT " + String.join(", ", keyNames) + " FROM `" + table + "`;";
+    }
+
+    /**
+     * Returns the statement selecting the rows of the given amount of keys
+     * @param amount the amount of keys
+     * @return the SQL statement
+     */
+    @NotNull
+    String selectInSql(int amount) {
+        return selectInSql.computeIfAbsent(amount, n -> "SELECT " + columnList + " FROM `" + table + "` WHERE " + getInCondition(n) + ";");
+    }
+
+    /**
+     * Returns the statement deleting the rows of the given amount of keys
+     * @param amount the amount of keys
+     * @return the SQL statement
+     */
+    @NotNull
+    String deleteInSql(int amount) {
+        return deleteInSql.computeIfAbsent(amount, n -> "DELETE FROM `" + table + "` WHERE " + getInCondition(n) + ";");
+    }
+
+    private String getInCondition(int amount) {
+        return keyList + " IN (" + String.join(", ", Collections.nCopies(amount, keyTuple)) + ")";
+    }
+
+    /**
+     * Binds the values of a key
+     * @param ps the statement
+     * @param index the position of the first parameter of the key
+     * @return the position of the parameter following the key
+     */
+    int bindKey(@NotNull PreparedStatement ps, int index, @NotNull DataKey key) throws SQLException {
+        for (int i = 0; i < keyBinders.length; i++) {
+            keyBinders[i].bind(ps, index++, key.get(i));
+        }
+        return index;
+    }
+
+    /**
+     * Binds the values of every column of an item, in the order of the upsert statement
+     * @param ps the statement
+     * @param item the item to store
+     */
+    void bindRow(@NotNull PreparedStatement ps, @NotNull Object item) throws SQLException, ReflectiveOperationException {
+        for (int i = 0; i < binders.length; i++) {
+            binders[i].bind(ps, i + 1, columns[i].get(item));
+        }
+    }
+
+    /**
+     * Reads the current row of a result set of a select statement into an item. Columns holding null get the default
+     * value of their field
+     * @param rs the result set, positioned on the row to read
+     * @param item the item to fill
+     */
+    void readRow(@NotNull ResultSet rs, @NotNull Object item) throws SQLException, ReflectiveOperationException {
+        for (int i = 0; i < readers.length; i++) {
+            Object value = readers[i].read(rs, i + 1);
+            columns[i].set(item, value != null ? value : columns[i].defaultValue);
+        }
+    }
+
+    /**
+     * Reads the current row of a result set of the key select statement
+     * @param rs the result set, positioned on the row to read
+     * @return the key of the row
+     */
+    @NotNull
+    DataKey readKey(@NotNull ResultSet rs) throws SQLException {
+        Serializable[] values = new Serializable[keyReaders.length];
+        for (int i = 0; i < keyReaders.length; i++) {
+            values[i] = (Serializable) keyReaders[i].read(rs, i + 1);
+        }
+        return DataKey.ofArray(values);
+    }
+
+    /**
+     * Checks if a field is stored as BINARY(16) when the binary UUID mode is enabled
+     * @param field the field
+     * @return true if the field is a UUID without a custom SQL type, false otherwise
+     */
+    static boolean isBinaryUUID(@NotNull FieldData field) {
+        if (!UUID.class.equals(field.type)) {
+            return false;
+        }
+        DataField annotation = field.field.getAnnotation(DataField.class);
+        return annotation == null || annotation.sqltype().isEmpty();
+    }
+
+    private static void bindBinaryUUID(@NotNull PreparedStatement ps, int index, Object value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BINARY);
+            return;
+        }
+        UUID uuid = value instanceof UUID ? (UUID) value : UUID.fromString(value.toString());
+        ps.setBytes(index, ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array());
+    }
+
+    private static Object readBinaryUUID(@NotNull ResultSet rs, int index) throws SQLException {
+        byte[] raw = rs.getBytes(index);
+        if (raw == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(raw);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static ColumnReader readerFor(@NotNull Class<?> type) {
+        if (byte.class.equals(type) || Byte.class.equals(type)) {
+            return ResultSet::getByte;
+        }
+        else if (short.class.equals(type) || Short.class.equals(type)) {
+            return ResultSet::getShort;
+        }
+        else if (int.class.equals(type) || Integer.class.equals(type)) {
+            return ResultSet::getInt;
+        }
+        else if (long.class.equals(type) || Long.class.equals(type)) {
+            return ResultSet::getLong;
+        }
+        else if (float.class.equals(type) || Float.class.equals(type)) {
+            return ResultSet::getFloat;
+        }
+        else if (double.class.equals(type) || Double.class.equals(type)) {
+            return ResultSet::getDouble;
+        }
+        else if (boolean.class.equals(type) || Boolean.class.equals(type)) {
+            return ResultSet::getBoolean;
+        }
+        else if (char.class.equals(type) || Character.class.equals(type)) {
+            return (rs, i) -> {
+                String raw = rs.getString(i);
+                return raw != null && !raw.isEmpty() ? raw.charAt(0) : null;
+            };
+        }
+        else if (String.class.equals(type)) {
+            return ResultSet::getString;
+        }
+        else if (UUID.class.equals(type)) {
+            return (rs, i) -> {
+                String raw = rs.getString(i);
+                return raw != null ? UUID.fromString(raw) : null;
+            };
+        }
+        return ResultSet::getObject;
+    }
+
+    private static ColumnBinder binderFor(@NotNull Class<?> type) {
+        if (byte.class.equals(type) || Byte.class.equals(type)) {
+            return (ps, i, v) -> {
+                if (v == null) ps.setNull(i, Types.TINYINT);
+                else ps.setByte(i, ((Number) v).byteValue());
+            };
+        }
+        else if (short.class.equals(type) || Short.class.equals(type)) {
+            return (ps, i, v) -> {
+                if (v == null) ps.setNull(i, Types.SMALLINT);
+                else ps.setShort(i, ((Number) v).shortValue());
+            };
+        }
+        else if (int.class.equals(type) || Integer.class.equals(type)) {
+            return (ps, i, v) -> {
+                if (v == null) ps.setNull(i, Types.INTEGER);
+                else ps.setInt(i, ((Number) v).intValue());
+            };
+        }
+        else if (long.class.equals(type) || Long.class.equals(type)) {
+            return (ps, i, v) -> {
+                if (v == null) ps.setNull(i, Types.BIGINT);
+                else ps.setLong(i, ((Number) v).longValue());
+            };
+        }
+        else if (float.class.equals(type) || Float.class.equals(type)) {
+            return (ps, i, v) -> {
+                if (v == null) ps.setNull(i, Types.FLOAT);
+                else ps.setFloat(i, ((Number) v).floatValue());
+            };
+        }
+        else if (double.class.equals(type) || Double.class.equals(type)) {
+            return (ps, i, v) -> {
+                if (v == null) ps.setNull(i, Types.DOUBLE);
+                else ps.setDouble(i, ((Number) v).doubleValue());
+            };
+        }
+        else if (boolean.class.equals(type) || Boolean.class.equals(type)) {
+            return (ps, i, v) -> {
+                if (v == null) ps.setNull(i, Types.BOOLEAN);
+                else ps.setBoolean(i, (Boolean) v);
+            };
+        }
+        else if (char.class.equals(type) || Character.class.equals(type)
+                || String.class.equals(type) || UUID.class.equals(type)) {
+            return (ps, i, v) -> ps.setString(i, v != null ? v.toString() : null);
+        }
+        return PreparedStatement::setObject;
+    }
+}
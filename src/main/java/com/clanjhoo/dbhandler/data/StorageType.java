@@ -8,6 +8,10 @@ public enum StorageType {
      * Store the data in json format. Tables will be folders and rows will be json files
      */
     JSON,
+    /**
+     * Store the data in a compact binary format. Tables will be folders and rows will be binary files
+     */
+    BINARY,
     /**
      * Store the data in a MariaDB database.
      */
@@ -15,5 +19,23 @@ public enum StorageType {
     /**
      * Store the data in a MySQL database.
      */
-    MYSQL;
+    MYSQL,
+    /**
+     * Store the data in an embedded SQLite database file.
+     */
+    SQLITE,
+    /**
+     * Store the data in append-only log files. Tables will be folders of segment files indexed in memory
+     */
+    LOG,
+    /**
+     * Store the data as fixed-width records in a memory-mapped file per table. Every field of the entity must be a
+     * primitive, its wrapper or a UUID
+     */
+    MAPPED,
+    /**
+     * Keep the data in memory only, with optional artificial latency and failures. Nothing survives a restart, it is
+     * meant for benchmarks and tests
+     */
+    MEMORY;
 }
@@ -159,12 +159,34 @@ public class TableData {
      * @return the SQL query
      */
     public String getCreateString(String prefix) {
+        return getCreateString(prefix, Collections.emptyMap());
+    }
+
+    /**
+     * Returns the SQL query used to create the table associated with this object, replacing the types of some fields
+     * @param prefix the prefix to prepend to the table name
+     * @param types a map which maps the name of a field with the SQL type to use instead of its own
+     * @return the SQL query
+     */
+    public String getCreateString(String prefix, Map<String, String> types) {
+        return getCreateString(prefix, types, SQLDialect.MYSQL);
+    }
+
+    /**
+     * Returns the SQL query used to create the table associated with this object in the given dialect, replacing the
+     * types of some fields
+     * @param prefix the prefix to prepend to the table name
+     * @param types a map which maps the name of a field with the SQL type to use instead of its own
+     * @param dialect the dialect of the database that will run the query
+     * @return the SQL query
+     */
+    public String getCreateString(String prefix, Map<String, String> types, SQLDialect dialect) {
         if (prefix == null) {
             prefix = "";
         }
         StringBuilder createString = new StringBuilder("CREATE TABLE IF NOT EXISTS `" + prefix + name + "` (");
         for (String field : data.keySet()) {
-            createString.append(getCreateField(field)).append(", ");
+            createString.append(getCreateField(field, types.get(field))).append(", ");
         }
         createString.append("CONSTRAINT PK_").append(name).append(" PRIMARY KEY (").append(String.join(",", primaryKeys)).append(")");
         for (int i = 0; i < uniqueKeys.size(); i++) {
@@ -176,14 +198,20 @@ public class TableData {
             createString.append(", CONSTRAINT FK_").append(name).append(localField).append(" FOREIGN KEY (").append(localField).append(")");
             createString.append(" REFERENCES").append(foreignField.getSecond().name).append("(").append(foreignField.getFirst()).append(")");
         }
-        createString.append(") DEFAULT CHARACTER SET ascii COLLATE ascii_general_ci;");
+        if (dialect == SQLDialect.SQLITE) {
+            // SQLite has no table options, text is always UTF-8
+            createString.append(");");
+        }
+        else {
+            createString.append(") DEFAULT CHARACTER SET ascii COLLATE ascii_general_ci;");
+        }
 
         return createString.toString();
     }
 
-    private String getCreateField(String name) {
+    private String getCreateField(String name, String type) {
         FieldData field = data.get(name);
-        String fieldCreate = "`" + name + "` " + field.type;
+        String fieldCreate = "`" + name + "` " + (type != null ? type : field.type);
         if (!field.canBeNull) {
             fieldCreate += " NOT NULL";
         }
@@ -0,0 +1,116 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * A hierarchical timer wheel holding the expiration deadlines of the entries of an EntityCache.
+ * Each level splits time in buckets 64 times wider than the ones of the previous level, so scheduling an entry is O(1)
+ * and advancing the wheel only visits the buckets whose time has passed, cascading their entries to the lower levels.
+ * Not thread safe, the owner cache guards it with its own lock
+ * @param <K> the type of the keys of the cache
+ * @param <V> the type of the values of the cache
+ */
+final class TimerWheel<K, V> {
+    // ~1 second, ~1 minute, ~1 hour, ~3 days and ~6 months per bucket
+    private static final int[] SHIFTS = {10, 16, 22, 28, 34};
+    private static final int[] BUCKETS = {64, 64, 64, 64, 1};
+
+    private final EntityCache.Node<K, V>[][] wheel;
+    private long time;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long now) {
+        time = now;
+        wheel = new EntityCache.Node[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new EntityCache.Node[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                wheel[i][j] = EntityCache.Node.sentinel();
+            }
+        }
+    }
+
+    /**
+     * Adds an entry to the wheel. Its deadline must be set beforehand
+     * @param node the entry to schedule
+     */
+    void schedule(@NotNull EntityCache.Node<K, V> node) {
+        EntityCache.Node<K, V> sentinel = findBucket(Math.max(node.deadline, time));
+        node.timerPrev = sentinel.timerPrev;
+        node.timerNext = sentinel;
+        sentinel.timerPrev.timerNext = node;
+        sentinel.timerPrev = node;
+    }
+
+    /**
+     * Removes an entry from the wheel, if it was scheduled
+     * @param node the entry to remove
+     */
+    void deschedule(@NotNull EntityCache.Node<K, V> node) {
+        if (node.timerNext == null) {
+            return;
+        }
+        node.timerPrev.timerNext = node.timerNext;
+        node.timerNext.timerPrev = node.timerPrev;
+        node.timerPrev = null;
+        node.timerNext = null;
+    }
+
+    /**
+     * Advances the wheel up to the given time, removing the entries whose deadline has passed
+     * @param now the current time in milliseconds
+     * @param expired the list where the expired entries will be added
+     */
+    void advance(long now, @NotNull List<EntityCache.Node<K, V>> expired) {
+        long previous = time;
+        time = now;
+        for (int i = 0; i < SHIFTS.length; i++) {
+            long previousTicks = previous >>> SHIFTS[i];
+            long currentTicks = now >>> SHIFTS[i];
+            if (currentTicks - previousTicks <= 0) {
+                break;
+            }
+            expire(i, previousTicks, currentTicks - previousTicks, now, expired);
+        }
+    }
+
+    private void expire(int level, long previousTicks, long delta, long now, List<EntityCache.Node<K, V>> expired) {
+        EntityCache.Node<K, V>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int start = (int) (previousTicks & mask);
+        int end = start + (int) Math.min(delta + 1, buckets.length);
+        for (int i = start; i < end; i++) {
+            EntityCache.Node<K, V> sentinel = buckets[i & mask];
+            EntityCache.Node<K, V> node = sentinel.timerNext;
+            sentinel.timerPrev = sentinel;
+            sentinel.timerNext = sentinel;
+            while (node != sentinel) {
+                EntityCache.Node<K, V> next = node.timerNext;
+                node.timerPrev = null;
+                node.timerNext = null;
+                if (node.deadline > now) {
+                    // Not yet, cascade it to a finer bucket
+                    schedule(node);
+                }
+                else {
+                    expired.add(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private EntityCache.Node<K, V> findBucket(long deadline) {
+        long duration = deadline - time;
+        int last = SHIFTS.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < (1L << SHIFTS[i + 1])) {
+                long ticks = deadline >>> SHIFTS[i];
+                return wheel[i][(int) (ticks & (BUCKETS[i] - 1))];
+            }
+        }
+        return wheel[last][0];
+    }
+}
@@ -0,0 +1,246 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded queue of the keys waiting to be saved by a DBObjectManager. Saving a key that is already waiting does not
+ * take more room, the pending save is reused. A single thread hands the waiting keys to the flusher once enough of them
+ * have been queued or once the oldest one has waited for the flush interval. When the queue is full, callers wait until
+ * the flusher makes room
+ */
+final class WriteBehindQueue {
+    private final Logger logger;
+    private final Consumer<Map<DataKey, Boolean>> flusher;
+    private final int capacity;
+    private final int flushSize;
+    private final long flushInterval;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushNow = lock.newCondition();
+    // Held while a batch is being written, so a drain can wait for the batch in progress
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final Thread thread;
+    private Map<DataKey, Boolean> pending = new LinkedHashMap<>();
+    private long oldest;
+    private int peakSize;
+    private boolean running = true;
+
+    /**
+     * Creates a new queue and starts its flusher thread
+     * @param name the name of the flusher thread
+     * @param logger the logger used to report errors thrown by the flusher
+     * @param capacity the maximum amount of keys waiting to be saved
+     * @param flushSize the amount of waiting keys that triggers a flush
+     * @param flushInterval the maximum time in milliseconds a key waits before being flushed
+     * @param flusher receives the keys to save, mapped to whether they have to be removed from memory after saving them
+     */
+    WriteBehindQueue(@NotNull String name, @NotNull Logger logger, int capacity, int flushSize, long flushInterval, @NotNull Consumer<Map<DataKey, Boolean>> flusher) {
+        if (capacity < 1 || flushSize < 1 || flushInterval < 0) {
+            throw new IllegalArgumentException("The capacity and the flush size must be positive and the flush interval can not be negative");
+        }
+        this.logger = logger;
+        this.capacity = capacity;
+        this.flushSize = Math.min(flushSize, capacity);
+        this.flushInterval = flushInterval;
+        this.flusher = flusher;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a key to be saved, waiting for room if the queue is full
+     * @param key the key of the item to save
+     * @param remove whether the item has to be removed from memory once saved
+     * @return false if the queue has been closed and the key was not queued, true otherwise
+     * @throws InterruptedException if the calling thread was interrupted while waiting for room
+     */
+    boolean offer(@NotNull DataKey key, boolean remove) throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                if (!running) {
+                    return false;
+                }
+                // Checked again after every wait, as the key may have been queued by another thread meanwhile
+                Boolean previous = pending.get(key);
+                if (previous != null) {
+                    coalesced.increment();
+                    if (remove && !previous) {
+                        pending.put(key, true);
+                    }
+                    return true;
+                }
+                if (pending.size() < capacity) {
+                    break;
+                }
+                flushNow.signal();
+                notFull.await();
+            }
+            if (pending.isEmpty()) {
+                oldest = System.currentTimeMillis();
+            }
+            pending.put(key, remove);
+            peakSize = Math.max(peakSize, pending.size());
+            if (pending.size() == 1) {
+                notEmpty.signal();
+            }
+            if (pending.size() >= flushSize) {
+                flushNow.signal();
+            }
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Saves every waiting key in the calling thread, after the batch currently being saved by the flusher thread
+     */
+    void drain() {
+        flushLock.lock();
+        try {
+            flush(takeAll());
+        }
+        finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Saves every waiting key and stops the flusher thread
+     */
+    void close() {
+        lock.lock();
+        try {
+            running = false;
+            notEmpty.signal();
+            flushNow.signal();
+            notFull.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * Returns the amount of keys waiting to be saved
+     * @return the depth of the queue
+     */
+    int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the largest amount of keys that have been waiting at the same time
+     * @return the peak depth of the queue
+     */
+    int peakSize() {
+        lock.lock();
+        try {
+            return peakSize;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how many saves were merged into a save that was already waiting
+     * @return the amount of coalesced saves
+     */
+    long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns how many keys have been handed to the flusher
+     * @return the amount of flushed keys
+     */
+    long flushedCount() {
+        return flushed.sum();
+    }
+
+    private Map<DataKey, Boolean> takeAll() {
+        lock.lock();
+        try {
+            Map<DataKey, Boolean> batch = pending;
+            pending = new LinkedHashMap<>();
+            notFull.signalAll();
+            return batch;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush(Map<DataKey, Boolean> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            flusher.accept(batch);
+        }
+        catch (Exception ex) {
+            logger.log(Level.SEVERE, "Error while saving queued items!");
+            ex.printStackTrace();
+        }
+        flushed.add(batch.size());
+    }
+
+    private void run() {
+        while (true) {
+            lock.lock();
+            try {
+                while (pending.isEmpty() && running) {
+                    notEmpty.await();
+                }
+                if (!running) {
+                    return;
+                }
+                long wait = oldest + flushInterval - System.currentTimeMillis();
+                while (pending.size() < flushSize && wait > 0 && running) {
+                    flushNow.await(wait, TimeUnit.MILLISECONDS);
+                    wait = oldest + flushInterval - System.currentTimeMillis();
+                }
+                if (!running) {
+                    return;
+                }
+            }
+            catch (InterruptedException ex) {
+                return;
+            }
+            finally {
+                lock.unlock();
+            }
+            flushLock.lock();
+            try {
+                flush(takeAll());
+            }
+            finally {
+                flushLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.clanjhoo.dbhandler.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the log store recovers what was written before a crash and that compaction does not lose or resurrect keys
+ */
+class LogStoreTest {
+    private static final Logger LOGGER = Logger.getLogger(LogStoreTest.class.getName());
+    private static final long SEGMENT_SIZE = 1 << 20;
+    // The smallest segment size allowed, so every write starts a new segment
+    private static final long TINY_SEGMENT = 12;
+
+    @TempDir
+    Path folder;
+
+    private LogStore open(long segmentSize) throws IOException {
+        return new LogStore(folder, LOGGER, segmentSize, false, 0.5);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void put(LogStore store, String key, String value) throws IOException {
+        Map<String, byte[]> values = new HashMap<>();
+        values.put(key, value != null ? bytes(value) : null);
+        store.write(values);
+    }
+
+    private Path segment(int id) {
+        return folder.resolve(String.format("%08d.log", id));
+    }
+
+    @Test
+    void recoversWrittenValues() throws IOException {
+        LogStore store = open(SEGMENT_SIZE);
+        put(store, "a", "first");
+        put(store, "b", "second");
+        put(store, "a", "third");
+        put(store, "b", null);
+        store.close();
+
+        LogStore reopened = open(SEGMENT_SIZE);
+        assertArrayEquals(bytes("third"), reopened.get("a"));
+        assertNull(reopened.get("b"));
+        assertFalse(reopened.contains("b"));
+        reopened.close();
+    }
+
+    @Test
+    void cutsOffTornTail() throws IOException {
+        LogStore store = open(SEGMENT_SIZE);
+        put(store, "a", "kept");
+        long intact = Files.size(segment(0));
+        put(store, "b", "torn");
+        store.close();
+        // A crash in the middle of the second record leaves only part of it on the disk
+        try (FileChannel channel = FileChannel.open(segment(0), StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(segment(0)) - 3);
+        }
+
+        LogStore reopened = open(SEGMENT_SIZE);
+        assertArrayEquals(bytes("kept"), reopened.get("a"));
+        assertFalse(reopened.contains("b"));
+        assertEquals(intact, Files.size(segment(0)));
+        // New records are appended after the last intact one
+        put(reopened, "c", "after");
+        reopened.close();
+
+        LogStore again = open(SEGMENT_SIZE);
+        assertArrayEquals(bytes("kept"), again.get("a"));
+        assertArrayEquals(bytes("after"), again.get("c"));
+        again.close();
+    }
+
+    @Test
+    void stopsReplayAtChecksumMismatch() throws IOException {
+        LogStore store = open(SEGMENT_SIZE);
+        put(store, "a", "kept");
+        put(store, "b", "corrupted");
+        put(store, "c", "after");
+        store.close();
+        // Flip the last byte of the value of b, after the 12 bytes of header and the key
+        long position = Files.size(segment(0)) - (12 + 1 + "after".length()) - 1;
+        try (FileChannel channel = FileChannel.open(segment(0), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, position);
+            buffer.put(0, (byte) (buffer.get(0) ^ 0xFF));
+            buffer.rewind();
+            channel.write(buffer, position);
+        }
+
+        LogStore reopened = open(SEGMENT_SIZE);
+        assertArrayEquals(bytes("kept"), reopened.get("a"));
+        // Nothing after a corrupted record can be trusted
+        assertFalse(reopened.contains("b"));
+        assertFalse(reopened.contains("c"));
+        reopened.close();
+    }
+
+    @Test
+    void compactionKeepsTombstonesOfOlderValues() throws IOException {
+        LogStore store = open(TINY_SEGMENT);
+        Map<String, byte[]> first = new LinkedHashMap<>();
+        first.put("live", new byte[4096]);
+        first.put("removed", bytes("old"));
+        store.write(first);
+        put(store, "removed", null);
+        put(store, "filler", "value");
+        store.compact();
+        // The segment of the tombstone is compacted, the first one is still mostly live and stays
+        assertTrue(Files.exists(segment(0)));
+        assertFalse(Files.exists(segment(1)));
+        store.close();
+
+        LogStore reopened = open(TINY_SEGMENT);
+        // Dropping the tombstone would bring back the value kept in the first segment
+        assertFalse(reopened.contains("removed"));
+        assertNull(reopened.get("removed"));
+        assertArrayEquals(new byte[4096], reopened.get("live"));
+        assertArrayEquals(bytes("value"), reopened.get("filler"));
+        reopened.close();
+    }
+
+    @Test
+    void compactionMovesLiveRecords() throws IOException {
+        LogStore store = open(TINY_SEGMENT);
+        Map<String, byte[]> first = new LinkedHashMap<>();
+        first.put("a", bytes("replaced by a later write"));
+        first.put("b", bytes("moved"));
+        store.write(first);
+        put(store, "a", "latest");
+        put(store, "c", "filler");
+        store.compact();
+        // Most of the first segment was replaced, so its live record is copied and the segment deleted
+        assertFalse(Files.exists(segment(0)));
+        assertArrayEquals(bytes("latest"), store.get("a"));
+        assertArrayEquals(bytes("moved"), store.get("b"));
+        store.close();
+
+        LogStore reopened = open(TINY_SEGMENT);
+        assertArrayEquals(bytes("latest"), reopened.get("a"));
+        assertArrayEquals(bytes("moved"), reopened.get("b"));
+        assertArrayEquals(bytes("filler"), reopened.get("c"));
+        reopened.close();
+    }
+}